@@ -0,0 +1,84 @@
+package org.ithub.cartservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.ithub.cartservice.dto.ProductDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Последние известные копии товаров каталога вместе с их ETag.
+// В течение fresh-ttl копия отдается без запроса к каталогу, после refresh-after обновляется в фоне,
+// а до max-stale хранится на случай недоступности каталога
+@Component
+public class ProductCache {
+    private final Cache<Long, Entry> cache;
+    private final Duration freshTtl;
+    private final Duration refreshAfter;
+    private final Timer age;
+    private final Counter staleServed;
+
+    public ProductCache(MeterRegistry meterRegistry,
+                        @Value("${cart.product-cache.max-size:10000}") long maxSize,
+                        @Value("${cart.product-cache.fresh-ttl:30s}") Duration freshTtl,
+                        @Value("${cart.product-cache.refresh-after:20s}") Duration refreshAfter,
+                        @Value("${cart.product-cache.max-stale:30m}") Duration maxStale) {
+        this.freshTtl = freshTtl;
+        this.refreshAfter = refreshAfter;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxStale)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "catalogProducts");
+        this.age = Timer.builder("cart.product-cache.age")
+                .description("Age of cached products served instead of calling the catalog")
+                .register(meterRegistry);
+        this.staleServed = Counter.builder("cart.product-cache.stale.served")
+                .description("Stale products served because the catalog was unavailable")
+                .register(meterRegistry);
+    }
+
+    public Entry get(Long productId) {
+        return cache.getIfPresent(productId);
+    }
+
+    public boolean isFresh(Entry entry) {
+        return entry != null && entry.age().compareTo(freshTtl) < 0;
+    }
+
+    public boolean needsRefresh(Entry entry) {
+        return entry.age().compareTo(refreshAfter) >= 0;
+    }
+
+    public void put(ProductDto product, String eTag) {
+        if (eTag != null) {
+            cache.put(product.getId(), new Entry(product, eTag, Instant.now()));
+        }
+    }
+
+    public void invalidate(Long productId) {
+        cache.invalidate(productId);
+    }
+
+    public void recordServed(Entry entry) {
+        age.record(entry.age());
+    }
+
+    public void recordStaleServed(Entry entry) {
+        age.record(entry.age());
+        staleServed.increment();
+    }
+
+    public record Entry(ProductDto product, String eTag, Instant fetchedAt) {
+        public Duration age() {
+            return Duration.between(fetchedAt, Instant.now());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.ithub.cartservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.ithub.cartservice.dto.UserDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Профили пользователей, нужные корзине. Запись считается свежей в течение ttl,
+// после этого хранится до max-stale и отдается, только если UserService недоступен
+@Component
+public class UserProfileCache {
+    private final Cache<Long, Entry> cache;
+    private final Duration ttl;
+
+    public UserProfileCache(MeterRegistry meterRegistry,
+                            @Value("${cart.user-cache.max-size:50000}") long maxSize,
+                            @Value("${cart.user-cache.ttl:1h}") Duration ttl,
+                            @Value("${cart.user-cache.max-stale:24h}") Duration maxStale) {
+        this.ttl = ttl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxStale)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userProfiles");
+    }
+
+    public Entry get(Long userId) {
+        return cache.getIfPresent(userId);
+    }
+
+    public boolean isFresh(Entry entry) {
+        return entry != null && entry.fetchedAt().plus(ttl).isAfter(Instant.now());
+    }
+
+    public void put(UserDto user) {
+        cache.put(user.getId(), new Entry(user, Instant.now()));
+    }
+
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+    }
+
+    public record Entry(UserDto user, Instant fetchedAt) {
+    }
+}
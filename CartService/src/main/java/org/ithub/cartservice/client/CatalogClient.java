@@ -2,12 +2,24 @@ package org.ithub.cartservice.client;
 
 import org.ithub.cartservice.dto.ProductDto;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+import java.util.List;
 
 @FeignClient(name = "catalog-service", url = "${catalog.service.url}")
 public interface CatalogClient {
 
+    // При совпадении ETag каталог отвечает 304, который приходит как FeignException со статусом 304
     @GetMapping("api/catalog/{id}")
-    ProductDto getProductById(@PathVariable("id") Long productId);
-}
\ No newline at end of file
+    ResponseEntity<ProductDto> getProductById(@PathVariable("id") Long productId,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String eTag);
+
+    @PostMapping("api/catalog/batch")
+    List<ProductDto> getProductsByIds(@RequestBody List<Long> productIds);
+}
@@ -4,10 +4,18 @@ import org.ithub.cartservice.dto.UserDto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.Collection;
+import java.util.List;
 
 @FeignClient(name = "user-service", url = "${user.service.url}")
 public interface UserClient {
     @GetMapping("api/users/{id}")
     UserDto getUserById(@PathVariable("id") Long id);
+
+    @PostMapping("api/users/batch")
+    List<UserDto> getUsersByIds(@RequestBody Collection<Long> ids);
 }
 
@@ -0,0 +1,39 @@
+package org.ithub.cartservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    // Пул для фонового обновления товаров в кеше. При переполнении задача отклоняется с исключением,
+    // вызывающий код снимает отметку обновления, и товар обновится при следующем обращении
+    @Bean
+    public ThreadPoolTaskExecutor productRefreshExecutor(
+            @Value("${cart.product-cache.refresh-pool-size:4}") int poolSize,
+            @Value("${cart.product-cache.refresh-queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("product-refresh-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    // Отдельный поток для прогрева кеша пользователей, чтобы старт сервиса не ждал UserService
+    @Bean
+    public ThreadPoolTaskExecutor userCacheWarmupExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("user-cache-warmup-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
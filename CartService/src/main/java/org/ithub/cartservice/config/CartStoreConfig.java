@@ -0,0 +1,12 @@
+package org.ithub.cartservice.config;
+
+import org.ithub.cartservice.store.CartStoreProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(CartStoreProperties.class)
+public class CartStoreConfig {
+}
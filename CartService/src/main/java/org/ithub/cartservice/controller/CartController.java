@@ -4,9 +4,14 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.cartservice.dto.CartCheckoutDto;
 import org.ithub.cartservice.dto.CartDto;
+import org.ithub.cartservice.dto.CheckoutCompletionRequest;
+import org.ithub.cartservice.dto.CheckoutLineDto;
+import org.ithub.cartservice.exception.CartLockedException;
 import org.ithub.cartservice.exception.CartNotFoundException;
 import org.ithub.cartservice.exception.ProductNotFoundException;
+import org.ithub.cartservice.exception.ServiceUnavailableException;
 import org.ithub.cartservice.exception.UserNotFoundException;
 import org.ithub.cartservice.response.CartItemResponse;
 import org.ithub.cartservice.service.CartService;
@@ -15,6 +20,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -73,6 +79,32 @@ public class CartController {
         return ResponseEntity.ok(cartDto);
     }
 
+    @PostMapping("/user/{userId}/checkout")
+    @Operation(summary = "Заблокировать корзину для оформления заказа и получить ее снимок")
+    public ResponseEntity<CartCheckoutDto> checkout(@PathVariable Long userId) {
+        log.info("Request to check out cart for user {}", userId);
+        CartCheckoutDto checkout = cartService.checkout(userId);
+        return ResponseEntity.ok(checkout);
+    }
+
+    @PostMapping("/user/{userId}/checkout/{checkoutId}/release")
+    @Operation(summary = "Отменить оформление и разблокировать корзину")
+    public ResponseEntity<CartDto> releaseCheckout(@PathVariable Long userId, @PathVariable String checkoutId) {
+        log.info("Request to release checkout {} for user {}", checkoutId, userId);
+        CartDto cartDto = cartService.releaseCheckout(userId, checkoutId);
+        return ResponseEntity.ok(cartDto);
+    }
+
+    @PostMapping("/user/{userId}/checkout/{checkoutId}/complete")
+    @Operation(summary = "Завершить оформление и очистить корзину")
+    public ResponseEntity<CartDto> completeCheckout(@PathVariable Long userId, @PathVariable String checkoutId,
+                                                    @RequestBody(required = false) CheckoutCompletionRequest request) {
+        log.info("Request to complete checkout {} for user {}", checkoutId, userId);
+        List<CheckoutLineDto> lines = request == null ? List.of() : request.getLines();
+        CartDto cartDto = cartService.completeCheckout(userId, checkoutId, lines);
+        return ResponseEntity.ok(cartDto);
+    }
+
     @ExceptionHandler({CartNotFoundException.class, UserNotFoundException.class, ProductNotFoundException.class})
     public ResponseEntity<Map<String, String>> handleNotFoundException(Exception e) {
         Map<String, String> response = new HashMap<>();
@@ -80,6 +112,20 @@ public class CartController {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
     }
 
+    @ExceptionHandler(CartLockedException.class)
+    public ResponseEntity<Map<String, String>> handleConflictException(Exception e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleServiceUnavailableException(Exception e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+
     @ExceptionHandler({IllegalArgumentException.class, IllegalStateException.class})
     public ResponseEntity<Map<String, String>> handleBadRequestException(Exception e) {
         Map<String, String> response = new HashMap<>();
@@ -0,0 +1,29 @@
+package org.ithub.cartservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.cartservice.service.UserDirectoryService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/carts/users")
+@RequiredArgsConstructor
+@Tag(name = "User Cache Controller", description = "API для уведомлений об изменении пользователей")
+public class UserCacheController {
+    private final UserDirectoryService userDirectoryService;
+
+    @PostMapping("/{userId}/invalidate")
+    @Operation(summary = "Сбросить закешированный профиль пользователя")
+    public ResponseEntity<Void> invalidate(@PathVariable Long userId) {
+        log.info("Request to invalidate cached profile of user {}", userId);
+        userDirectoryService.invalidate(userId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,19 @@
+package org.ithub.cartservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Снимок корзины, заблокированной для оформления заказа. Оформление завершается или отменяется по checkoutId,
+// без завершения блокировка снимается в expiresAt
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartCheckoutDto {
+    private String checkoutId;
+    private Instant checkedOutAt;
+    private Instant expiresAt;
+    private CartDto cart;
+}
@@ -0,0 +1,17 @@
+package org.ithub.cartservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Позиции, оформленные в заказ. Нужны, если блокировка оформления истекла до завершения:
+// тогда из корзины вычитаются только они, а добавленное после истечения остается
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutCompletionRequest {
+    private List<CheckoutLineDto> lines = new ArrayList<>();
+}
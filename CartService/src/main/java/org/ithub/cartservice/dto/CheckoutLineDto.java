@@ -0,0 +1,13 @@
+package org.ithub.cartservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutLineDto {
+    private Long productId;
+    private int quantity;
+}
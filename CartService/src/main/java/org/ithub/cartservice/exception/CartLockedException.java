@@ -0,0 +1,7 @@
+package org.ithub.cartservice.exception;
+
+public class CartLockedException extends RuntimeException {
+    public CartLockedException(String message) {
+        super(message);
+    }
+}
@@ -1,16 +1,19 @@
 package org.ithub.cartservice.model;
 
-import java.math.BigDecimal;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.ithub.money.Money;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Data
 @Entity
+@DynamicUpdate
 @Table(name = "carts")
 @NoArgsConstructor
 @AllArgsConstructor
@@ -25,50 +28,91 @@ public class Cart {
     @Column(nullable = false)
     private String username;
 
+    @Version
+    private Long version;
+
+    // Позиции проиндексированы по productId, порядок добавления сохраняется
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<CartItem> items = new ArrayList<>();
+    @MapKey(name = "productId")
+    @OrderBy("id")
+    private Map<Long, CartItem> items = new LinkedHashMap<>();
 
-    @Column(nullable = false)
-    private BigDecimal totalAmount = BigDecimal.ZERO;
+    @Column(nullable = false, precision = 19, scale = 2)
+    private Money totalAmount = Money.ZERO;
+
+    // Оформление, на время которого корзина заблокирована; после checkoutExpiresAt блокировка не действует
+    private String checkoutId;
+
+    private Instant checkoutExpiresAt;
+
+    // Последнее завершенное оформление: повторная доставка завершения ничего не вычитает второй раз
+    private String completedCheckoutId;
+
+    public boolean isLockedForCheckout(Instant now) {
+        return checkoutId != null && checkoutExpiresAt != null && checkoutExpiresAt.isAfter(now);
+    }
+
+    public void lockForCheckout(String checkoutId, Instant expiresAt) {
+        this.checkoutId = checkoutId;
+        this.checkoutExpiresAt = expiresAt;
+    }
 
+    public void unlockCheckout() {
+        this.checkoutId = null;
+        this.checkoutExpiresAt = null;
+    }
+
+    public void completeCheckout(String checkoutId) {
+        this.completedCheckoutId = checkoutId;
+        unlockCheckout();
+    }
+
+    // Полный пересчет суммы; изменения позиций обновляют сумму на разницу
     public void recalculateTotal() {
-        this.totalAmount = items.stream()
-                .map(item -> item.getPrice().multiply(new BigDecimal(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long total = 0;
+        for (CartItem item : items.values()) {
+            total = Math.addExact(total, Math.multiplyExact(item.getPrice().minorUnits(), item.getQuantity()));
+        }
+        this.totalAmount = Money.ofMinor(total);
     }
 
-    public void addItem(CartItem item) {
-        for (CartItem existingItem : items) {
-            if (existingItem.getProductId().equals(item.getProductId())) {
-                existingItem.setQuantity(existingItem.getQuantity() + item.getQuantity());
-                recalculateTotal();
-                return;
-            }
+    // Добавляет позицию или увеличивает количество существующей; возвращает позицию корзины
+    public CartItem addItem(CartItem item) {
+        CartItem existingItem = items.get(item.getProductId());
+        if (existingItem != null) {
+            existingItem.setQuantity(existingItem.getQuantity() + item.getQuantity());
+            adjustTotal(existingItem.getPrice(), item.getQuantity());
+            return existingItem;
         }
 
         item.setCart(this);
-        items.add(item);
-        recalculateTotal();
+        items.put(item.getProductId(), item);
+        adjustTotal(item.getPrice(), item.getQuantity());
+        return item;
     }
 
     public void removeItem(Long productId) {
-        items.removeIf(item -> item.getProductId().equals(productId));
-        recalculateTotal();
+        CartItem removedItem = items.remove(productId);
+        if (removedItem != null) {
+            adjustTotal(removedItem.getPrice(), -removedItem.getQuantity());
+        }
     }
 
     public void updateItemQuantity(Long productId, int quantity) {
-        for (CartItem item : items) {
-            if (item.getProductId().equals(productId)) {
-                item.setQuantity(quantity);
-                recalculateTotal();
-                return;
-            }
+        CartItem item = items.get(productId);
+        if (item != null) {
+            adjustTotal(item.getPrice(), quantity - item.getQuantity());
+            item.setQuantity(quantity);
         }
     }
 
     public void clearCart() {
         items.clear();
-        totalAmount = BigDecimal.ZERO;
+        totalAmount = Money.ZERO;
     }
-}
 
+    private void adjustTotal(Money price, int quantityDelta) {
+        long delta = Math.multiplyExact(price.minorUnits(), quantityDelta);
+        totalAmount = Money.ofMinor(Math.addExact(totalAmount.minorUnits(), delta));
+    }
+}
@@ -4,10 +4,12 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.ithub.money.Money;
 
-import java.math.BigDecimal;
 @Data
 @Entity
+@DynamicUpdate
 @Table(name = "cart_items")
 @NoArgsConstructor
 @AllArgsConstructor
@@ -26,8 +28,8 @@ public class CartItem {
     @Column(nullable = false)
     private String productName;
 
-    @Column(nullable = false)
-    private BigDecimal price;
+    @Column(nullable = false, precision = 19, scale = 2)
+    private Money price;
 
     @Column(nullable = false)
     private int quantity;
@@ -35,8 +37,8 @@ public class CartItem {
     @Column(length = 512)
     private String productImageUrl;
 
-    public BigDecimal getSubtotal() {
-        return price.multiply(new BigDecimal(quantity));
+    public Money getSubtotal() {
+        return price.times(quantity);
     }
 }
 
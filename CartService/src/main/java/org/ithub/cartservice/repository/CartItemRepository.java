@@ -0,0 +1,9 @@
+package org.ithub.cartservice.repository;
+
+import org.ithub.cartservice.model.CartItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+}
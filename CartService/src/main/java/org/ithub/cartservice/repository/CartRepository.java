@@ -1,9 +1,17 @@
 package org.ithub.cartservice.repository;
 
+import jakarta.persistence.LockModeType;
 import org.ithub.cartservice.model.Cart;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +20,19 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUserId(Long userId);
 
     boolean existsByUserId(Long userId);
-}
\ No newline at end of file
+
+    // Изменения корзины сериализуются блокировкой строки, чтобы проверка блокировки оформления
+    // и само изменение не разошлись между параллельными запросами
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Cart c where c.userId = :userId")
+    Optional<Cart> findForUpdateByUserId(@Param("userId") Long userId);
+
+    @EntityGraph(attributePaths = "items")
+    Optional<Cart> findWithItemsByUserId(Long userId);
+
+    @Query("select c.userId from Cart c order by c.id desc")
+    List<Long> findRecentUserIds(Pageable pageable);
+
+    @EntityGraph(attributePaths = "items")
+    List<Cart> findAllByUserIdIn(Collection<Long> userIds);
+}
@@ -4,15 +4,22 @@ import feign.FeignException;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.cartservice.cache.ProductCache;
 import org.ithub.cartservice.client.CatalogClient;
 import org.ithub.cartservice.client.UserClient;
 import org.ithub.cartservice.dto.ProductDto;
 import org.ithub.cartservice.dto.UserDto;
 import org.ithub.cartservice.exception.ProductNotFoundException;
+import org.ithub.cartservice.exception.ServiceUnavailableException;
 import org.ithub.cartservice.exception.UserNotFoundException;
+import org.ithub.feign.ConcurrencyLimitExceededException;
+import org.ithub.feign.HedgedRequestExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -20,56 +27,83 @@ import java.math.BigDecimal;
 public class CartCircuitBreakerService {
     private final CatalogClient catalogClient;
     private final UserClient userClient;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+    private final ProductCache productCache;
 
     // Получение информации о продукте с применением Circuit Breaker
     @CircuitBreaker(name = "catalogService", fallbackMethod = "getProductByIdFallback")
     public ProductDto getProductById(Long productId) {
+        // Локальная копия отправляется в If-None-Match, при 304 используем ее
+        ProductCache.Entry cached = productCache.get(productId);
+        String eTag = cached != null ? cached.eTag() : null;
         try {
-            return catalogClient.getProductById(productId);
+            ResponseEntity<ProductDto> response = hedgedRequestExecutor.execute("catalog.getProductById",
+                    () -> catalogClient.getProductById(productId, eTag));
+            productCache.put(response.getBody(), response.getHeaders().getETag());
+            return response.getBody();
         } catch (FeignException.NotFound e) {
             throw new ProductNotFoundException("Product not found with id: " + productId);
+        } catch (FeignException e) {
+            if (e.status() == HttpStatus.NOT_MODIFIED.value() && cached != null) {
+                // Копия подтверждена каталогом и снова считается свежей
+                productCache.put(cached.product(), cached.eTag());
+                return cached.product();
+            }
+            log.error("Error fetching product with id {}: {}", productId, e.getMessage());
+            throw new RuntimeException("Error fetching product data: " + e.getMessage());
+        } catch (ConcurrencyLimitExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error fetching product with id {}: {}", productId, e.getMessage());
             throw new RuntimeException("Error fetching product data: " + e.getMessage());
         }
     }
 
-    // Fallback метод для получения продукта при срабатывании Circuit Breaker
+    // Fallback метод для получения продукта при срабатывании Circuit Breaker.
+    // Заглушка с нулевой ценой не подставляется: последнюю известную копию отдает ProductLookupService
     public ProductDto getProductByIdFallback(Long productId, Exception e) {
         log.error("Circuit breaker triggered for product id {}: {}", productId, e.getMessage());
-
-        // Создаем базовую информацию о продукте для аварийного режима
-        ProductDto fallbackProduct = new ProductDto();
-        fallbackProduct.setId(productId);
-        fallbackProduct.setName("Временно недоступный товар");
-        fallbackProduct.setPrice(BigDecimal.valueOf(0.0));
-        fallbackProduct.setAvailable(false);
-
-        return fallbackProduct;
+        if (e instanceof ProductNotFoundException notFound) {
+            throw notFound;
+        }
+        throw new ServiceUnavailableException("Catalog service is unavailable");
     }
 
     // Получение информации о пользователе с применением Circuit Breaker
     @CircuitBreaker(name = "userService", fallbackMethod = "getUserByIdFallback")
     public UserDto getUserById(Long userId) {
         try {
-            return userClient.getUserById(userId);
+            return hedgedRequestExecutor.execute("user.getUserById",
+                    () -> userClient.getUserById(userId));
         } catch (FeignException.NotFound e) {
             throw new UserNotFoundException("User not found with id: " + userId);
+        } catch (ConcurrencyLimitExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error fetching user with id {}: {}", userId, e.getMessage());
             throw new RuntimeException("Error fetching user data: " + e.getMessage());
         }
     }
 
-    // Fallback метод для получения пользователя при срабатывании Circuit Breaker
+    // Fallback метод для получения пользователя при срабатывании Circuit Breaker.
+    // Выдуманное имя не подставляется: устаревшую запись из кеша отдает UserDirectoryService
     public UserDto getUserByIdFallback(Long userId, Exception e) {
         log.error("Circuit breaker triggered for user id {}: {}", userId, e.getMessage());
+        if (e instanceof UserNotFoundException notFound) {
+            throw notFound;
+        }
+        throw new ServiceUnavailableException("User service is unavailable");
+    }
 
-        // Создаем базовую информацию о пользователе для аварийного режима
-        UserDto fallbackUser = new UserDto();
-        fallbackUser.setId(userId);
-        fallbackUser.setUsername("temp_user_" + userId);
+    // Пакетное получение пользователей для прогрева кеша. У прогрева свой Circuit Breaker:
+    // сбои тяжелых пакетных запросов не должны открывать userService для обычных запросов
+    @CircuitBreaker(name = "userWarmup", fallbackMethod = "getUsersByIdsFallback")
+    public List<UserDto> getUsersByIds(Collection<Long> userIds) {
+        return userClient.getUsersByIds(userIds);
+    }
 
-        return fallbackUser;
+    public List<UserDto> getUsersByIdsFallback(Collection<Long> userIds, Exception e) {
+        log.error("Circuit breaker triggered for batch of {} users: {}", userIds.size(), e.getMessage());
+        return List.of();
     }
 }
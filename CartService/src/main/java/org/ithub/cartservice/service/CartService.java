@@ -2,109 +2,135 @@ package org.ithub.cartservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.cartservice.dto.CartCheckoutDto;
 import org.ithub.cartservice.dto.CartDto;
 import org.ithub.cartservice.dto.CartItemDto;
+import org.ithub.cartservice.dto.CheckoutLineDto;
 import org.ithub.cartservice.dto.ProductDto;
-import org.ithub.cartservice.dto.UserDto;
-import org.ithub.cartservice.exception.CartNotFoundException;
 import org.ithub.cartservice.model.Cart;
 import org.ithub.cartservice.model.CartItem;
-import org.ithub.cartservice.repository.CartRepository;
+import org.ithub.cartservice.store.CartStore;
+import org.ithub.money.Money;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CartService {
-    private final CartRepository cartRepository;
-    private final CartCircuitBreakerService circuitBreakerService;
+    private final CartStore cartStore;
+    private final UserDirectoryService userDirectoryService;
+    private final ProductLookupService productLookupService;
 
-    @Transactional(readOnly = true)
+    // Сколько корзина остается заблокированной, если OrderService не завершил и не отменил оформление
+    @Value("${cart.checkout.hold-ttl:15m}")
+    private Duration checkoutHoldTtl;
+
+    // Чтение ничего не записывает: если корзины нет, возвращается пустая корзина без id.
+    // Настоящая корзина создается при первом добавлении товара
     public CartDto getCartByUserId(Long userId) {
-        Cart cart = getOrCreateCart(userId);
-        return convertToDto(cart);
+        return cartStore.read(userId, cart -> toDtoOrEmpty(userId, cart));
     }
 
-    @Transactional
     public CartDto addProductToCart(Long userId, Long productId, int quantity) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero");
         }
 
-        // Получаем информацию о продукте через Circuit Breaker
-        ProductDto productDto = circuitBreakerService.getProductById(productId);
+        // Получаем информацию о продукте из кеша, при необходимости через Circuit Breaker
+        ProductDto productDto = productLookupService.getProduct(productId);
 
         if (!productDto.isAvailable()) {
             throw new IllegalStateException("Product is not available: " + productId);
         }
 
-        Cart cart = getOrCreateCart(userId);
         CartItem cartItem = new CartItem();
         cartItem.setProductId(productDto.getId());
         cartItem.setProductName(productDto.getName());
-        cartItem.setPrice(productDto.getPrice());
+        cartItem.setPrice(Money.of(productDto.getPrice()));
         cartItem.setQuantity(quantity);
         cartItem.setProductImageUrl(null);
-        cart.addItem(cartItem);
-        Cart savedCart = cartRepository.save(cart);
+        CartDto cartDto = cartStore.addItem(userId, () -> fetchUsername(userId), cartItem, this::convertToDto);
         log.info("Added product {} to cart for user {}", productId, userId);
-        return convertToDto(savedCart);
+        return cartDto;
     }
 
-    @Transactional
     public CartDto updateProductQuantity(Long userId, Long productId, int quantity) {
         if (quantity <= 0) {
             return removeProductFromCart(userId, productId);
         }
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseThrow(() -> new CartNotFoundException("Cart not found for user: " + userId));
-        cart.updateItemQuantity(productId, quantity);
-        Cart savedCart = cartRepository.save(cart);
+        CartDto cartDto = cartStore.updateItemQuantity(userId, productId, quantity, this::convertToDto);
         log.info("Updated quantity for product {} to {} in cart for user {}", productId, quantity, userId);
-        return convertToDto(savedCart);
+        return cartDto;
     }
 
-    @Transactional
     public CartDto removeProductFromCart(Long userId, Long productId) {
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseThrow(() -> new CartNotFoundException("Cart not found for user: " + userId));
-        cart.removeItem(productId);
-        Cart savedCart = cartRepository.save(cart);
+        CartDto cartDto = cartStore.removeItem(userId, productId, this::convertToDto);
         log.info("Removed product {} from cart for user {}", productId, userId);
-        return convertToDto(savedCart);
+        return cartDto;
     }
 
-    @Transactional
     public CartDto clearCart(Long userId) {
-        Cart cart = cartRepository.findByUserId(userId)
-                .orElseThrow(() -> new CartNotFoundException("Cart not found for user: " + userId));
-        cart.clearCart();
-        Cart savedCart = cartRepository.save(cart);
+        CartDto cartDto = cartStore.clear(userId, this::convertToDto);
         log.info("Cleared cart for user {}", userId);
-        return convertToDto(savedCart);
+        return cartDto;
+    }
+
+    // Блокирует корзину на время оформления и возвращает ее снимок; пустую корзину оформить нельзя.
+    // Позиции остаются в корзине до завершения оформления, а без него блокировка истекает сама
+    public CartCheckoutDto checkout(Long userId) {
+        String checkoutId = UUID.randomUUID().toString();
+        Instant checkedOutAt = Instant.now();
+        Instant expiresAt = checkedOutAt.plus(checkoutHoldTtl);
+        CartDto cartDto = cartStore.lockForCheckout(userId, checkoutId, expiresAt, this::convertToDto);
+        log.info("Locked cart for user {} for checkout {} until {}", userId, checkoutId, expiresAt);
+        return new CartCheckoutDto(checkoutId, checkedOutAt, expiresAt, cartDto);
+    }
+
+    // Отменяет оформление и снова разрешает изменения корзины; повторный вызов ничего не меняет
+    public CartDto releaseCheckout(Long userId, String checkoutId) {
+        CartDto cartDto = cartStore.releaseCheckout(userId, checkoutId, cart -> toDtoOrEmpty(userId, cart));
+        log.info("Released checkout {} for user {}", checkoutId, userId);
+        return cartDto;
+    }
+
+    // Очищает корзину после фиксации заказа; повторный вызов ничего не меняет.
+    // Если блокировка уже истекла, вычитаются только позиции заказа
+    public CartDto completeCheckout(Long userId, String checkoutId, List<CheckoutLineDto> lines) {
+        Map<Long, Integer> orderedLines = new HashMap<>();
+        lines.forEach(line -> orderedLines.merge(line.getProductId(), line.getQuantity(), Integer::sum));
+        CartDto cartDto = cartStore.completeCheckout(userId, checkoutId, orderedLines,
+                cart -> toDtoOrEmpty(userId, cart));
+        log.info("Completed checkout {} for user {}", checkoutId, userId);
+        return cartDto;
     }
 
-    @Transactional(readOnly = true)
     public CartDto getCartById(Long cartId) {
-        Cart cart = cartRepository.findById(cartId)
-                .orElseThrow(() -> new CartNotFoundException("Cart not found with id: " + cartId));
-        return convertToDto(cart);
+        return cartStore.readById(cartId, this::convertToDto);
+    }
+
+    // Имя пользователя нужно только при создании корзины и берется из локального кеша профилей
+    private String fetchUsername(Long userId) {
+        return userDirectoryService.getUsername(userId);
+    }
+
+    private CartDto emptyCart(Long userId) {
+        CartDto cartDto = new CartDto();
+        cartDto.setUserId(userId);
+        cartDto.setTotalAmount(Money.ZERO.toBigDecimal());
+        return cartDto;
     }
 
-    // Получает существующую корзину пользователя или создает новую
-    private Cart getOrCreateCart(Long userId) {
-        return cartRepository.findByUserId(userId).orElseGet(() -> {
-            // Получаем информацию о пользователе через Circuit Breaker
-            UserDto userDto = circuitBreakerService.getUserById(userId);
-
-            Cart newCart = new Cart();
-            newCart.setUserId(userId);
-            newCart.setUsername(userDto.getUsername());
-            return cartRepository.save(newCart);
-        });
+    private CartDto toDtoOrEmpty(Long userId, Cart cart) {
+        return cart == null ? emptyCart(userId) : convertToDto(cart);
     }
 
     // Конвертирует сущность Cart в DTO
@@ -113,8 +139,8 @@ public class CartService {
         cartDto.setId(cart.getId());
         cartDto.setUserId(cart.getUserId());
         cartDto.setUsername(cart.getUsername());
-        cartDto.setTotalAmount(cart.getTotalAmount());
-        cartDto.setItems(cart.getItems().stream()
+        cartDto.setTotalAmount(cart.getTotalAmount().toBigDecimal());
+        cartDto.setItems(cart.getItems().values().stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList()));
         return cartDto;
@@ -126,10 +152,10 @@ public class CartService {
         cartItemDto.setId(cartItem.getId());
         cartItemDto.setProductId(cartItem.getProductId());
         cartItemDto.setProductName(cartItem.getProductName());
-        cartItemDto.setPrice(cartItem.getPrice());
+        cartItemDto.setPrice(cartItem.getPrice().toBigDecimal());
         cartItemDto.setQuantity(cartItem.getQuantity());
         cartItemDto.setProductImageUrl(cartItem.getProductImageUrl());
-        cartItemDto.setSubtotal(cartItem.getSubtotal());
+        cartItemDto.setSubtotal(cartItem.getSubtotal().toBigDecimal());
         return cartItemDto;
     }
 }
@@ -0,0 +1,79 @@
+package org.ithub.cartservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.cartservice.cache.ProductCache;
+import org.ithub.cartservice.dto.ProductDto;
+import org.ithub.cartservice.exception.ProductNotFoundException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Stale-while-revalidate поверх каталога: свежая копия отдается сразу, горячие товары обновляются в фоне
+// до истечения свежести, а при открытом Circuit Breaker или таймауте отдается последняя известная копия
+@Slf4j
+@Service
+public class ProductLookupService {
+    private final ProductCache productCache;
+    private final CartCircuitBreakerService circuitBreakerService;
+    private final ThreadPoolTaskExecutor refreshExecutor;
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+
+    public ProductLookupService(ProductCache productCache,
+                                CartCircuitBreakerService circuitBreakerService,
+                                @Qualifier("productRefreshExecutor") ThreadPoolTaskExecutor refreshExecutor) {
+        this.productCache = productCache;
+        this.circuitBreakerService = circuitBreakerService;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public ProductDto getProduct(Long productId) {
+        ProductCache.Entry cached = productCache.get(productId);
+        if (productCache.isFresh(cached)) {
+            if (productCache.needsRefresh(cached)) {
+                refreshAsync(productId);
+            }
+            productCache.recordServed(cached);
+            return cached.product();
+        }
+        try {
+            return circuitBreakerService.getProductById(productId);
+        } catch (ProductNotFoundException e) {
+            productCache.invalidate(productId);
+            throw e;
+        } catch (RuntimeException e) {
+            if (cached == null) {
+                throw e;
+            }
+            log.warn("Catalog unavailable, serving product {} cached {} ago", productId, cached.age());
+            productCache.recordStaleServed(cached);
+            return cached.product();
+        }
+    }
+
+    // Одновременно выполняется не больше одного обновления на товар
+    private void refreshAsync(Long productId) {
+        if (!refreshing.add(productId)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    circuitBreakerService.getProductById(productId);
+                } catch (ProductNotFoundException e) {
+                    productCache.invalidate(productId);
+                } catch (Exception e) {
+                    log.debug("Background refresh of product {} failed: {}", productId, e.getMessage());
+                } finally {
+                    refreshing.remove(productId);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Пул переполнен: без снятия отметки товар больше никогда не обновлялся бы в фоне
+            log.debug("Background refresh of product {} rejected: {}", productId, e.getMessage());
+            refreshing.remove(productId);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.ithub.cartservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.cartservice.cache.UserProfileCache;
+import org.ithub.cartservice.dto.UserDto;
+import org.ithub.cartservice.exception.UserNotFoundException;
+import org.ithub.cartservice.repository.CartRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+
+// Имена пользователей для корзин берутся из локального кеша. UserService вызывается только для
+// отсутствующих или устаревших записей; при его недоступности отдается устаревшая запись
+@Slf4j
+@Service
+public class UserDirectoryService {
+    private final UserProfileCache userProfileCache;
+    private final CartCircuitBreakerService circuitBreakerService;
+    private final CartRepository cartRepository;
+    private final ThreadPoolTaskExecutor warmupExecutor;
+    private final int warmSize;
+    private final int batchSize;
+
+    public UserDirectoryService(UserProfileCache userProfileCache,
+                                CartCircuitBreakerService circuitBreakerService,
+                                CartRepository cartRepository,
+                                @Qualifier("userCacheWarmupExecutor") ThreadPoolTaskExecutor warmupExecutor,
+                                @Value("${cart.user-cache.warm-size:5000}") int warmSize,
+                                @Value("${cart.user-cache.batch-size:500}") int batchSize) {
+        this.userProfileCache = userProfileCache;
+        this.circuitBreakerService = circuitBreakerService;
+        this.cartRepository = cartRepository;
+        this.warmupExecutor = warmupExecutor;
+        this.warmSize = warmSize;
+        this.batchSize = batchSize;
+    }
+
+    public String getUsername(Long userId) {
+        UserProfileCache.Entry cached = userProfileCache.get(userId);
+        if (userProfileCache.isFresh(cached)) {
+            return cached.user().getUsername();
+        }
+        try {
+            UserDto user = circuitBreakerService.getUserById(userId);
+            userProfileCache.put(user);
+            return user.getUsername();
+        } catch (UserNotFoundException e) {
+            userProfileCache.invalidate(userId);
+            throw e;
+        } catch (RuntimeException e) {
+            if (cached == null) {
+                throw e;
+            }
+            log.warn("User service unavailable, using cached profile of user {} fetched at {}",
+                    userId, cached.fetchedAt());
+            return cached.user().getUsername();
+        }
+    }
+
+    // Загружает профили пачками; уже свежие записи не запрашиваются
+    public void warm(Collection<Long> userIds) {
+        List<Long> missing = userIds.stream()
+                .distinct()
+                .filter(userId -> !userProfileCache.isFresh(userProfileCache.get(userId)))
+                .toList();
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<Long> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            circuitBreakerService.getUsersByIds(batch).forEach(userProfileCache::put);
+        }
+    }
+
+    public void invalidate(Long userId) {
+        userProfileCache.invalidate(userId);
+        log.info("Invalidated cached profile of user {}", userId);
+    }
+
+    // Прогрев кеша владельцами последних корзин при старте сервиса; выполняется в фоне,
+    // запросы до его окончания обращаются к UserService как обычно
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        warmupExecutor.execute(() -> {
+            try {
+                List<Long> userIds = cartRepository.findRecentUserIds(PageRequest.of(0, warmSize));
+                warm(userIds);
+                log.info("Warmed user profile cache with {} users", userIds.size());
+            } catch (Exception e) {
+                log.warn("Failed to warm user profile cache: {}", e.getMessage());
+            }
+        });
+    }
+}
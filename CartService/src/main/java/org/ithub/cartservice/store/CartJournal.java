@@ -0,0 +1,260 @@
+package org.ithub.cartservice.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Локальный журнал изменений корзин, еще не записанных в Postgres.
+// Журнал разбит на сегменты: перед каждой выгрузкой начинается новый сегмент,
+// а старые удаляются после того, как их изменения записаны в базу.
+// С fsync запись на диск групповая: один поток вызывает force для всех уже записанных строк,
+// а остальные ждут его результата, поэтому параллельные операции делят один fsync
+@Slf4j
+class CartJournal implements Closeable {
+    private static final String PREFIX = "cart-journal-";
+    private static final String CONFLICT_PREFIX = "cart-conflicts-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+    private final Object syncMonitor = new Object();
+    private FileChannel channel;
+    private long segment;
+    private boolean hasWrites;
+    // Номер последней записанной строки; защищен this
+    private long written;
+    // Номер последней строки, гарантированно сохраненной на диск; защищены syncMonitor
+    private long durable;
+    private boolean syncing;
+
+    CartJournal(Path directory, boolean fsync, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+        try {
+            Files.createDirectories(directory);
+            List<Long> existing = segments();
+            this.segment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+            this.channel = open(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open cart journal in " + directory, e);
+        }
+    }
+
+    // Записи предыдущих запусков в порядке их добавления
+    synchronized List<CartOp> replay() {
+        List<CartOp> ops = new ArrayList<>();
+        try {
+            for (Long existing : segments()) {
+                if (existing >= segment) {
+                    continue;
+                }
+                for (String line : Files.readAllLines(path(existing), StandardCharsets.UTF_8)) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        ops.add(objectMapper.readValue(line, CartOp.class));
+                    } catch (IOException e) {
+                        // Недописанная строка в конце сегмента после аварийной остановки
+                        log.warn("Skipping corrupted cart journal record in segment {}: {}", existing, e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read cart journal in " + directory, e);
+        }
+        return ops;
+    }
+
+    // Сериализация выполняется до захвата блокировки, под ней только запись строки в файл.
+    // Возвращает номер строки; дождаться ее сохранения на диск можно через awaitDurable
+    long append(CartOp op) {
+        try {
+            byte[] record = objectMapper.writeValueAsBytes(op);
+            ByteBuffer buffer = ByteBuffer.allocate(record.length + 1).put(record).put((byte) '\n').flip();
+            synchronized (this) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                hasWrites = true;
+                return ++written;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to cart journal", e);
+        }
+    }
+
+    // Без fsync возвращается сразу
+    void awaitDurable(long sequence) {
+        if (!fsync || sequence == 0) {
+            return;
+        }
+        try {
+            sync(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot sync cart journal", e);
+        }
+    }
+
+    // Ждет, пока строка с номером sequence окажется на диске. Если fsync сейчас никто не выполняет,
+    // поток сам вызывает force и тем самым фиксирует все строки, записанные к этому моменту
+    private void sync(long sequence) throws IOException {
+        while (true) {
+            synchronized (syncMonitor) {
+                while (syncing && durable < sequence) {
+                    try {
+                        syncMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for cart journal fsync");
+                    }
+                }
+                if (durable >= sequence) {
+                    return;
+                }
+                syncing = true;
+            }
+
+            long target;
+            FileChannel syncChannel;
+            synchronized (this) {
+                target = written;
+                syncChannel = channel;
+            }
+            boolean synced = false;
+            try {
+                syncChannel.force(false);
+                synced = true;
+            } catch (ClosedChannelException e) {
+                // Сегмент закрыли rotate или close, которые сами сохраняют его на диск перед закрытием
+                synced = true;
+            } finally {
+                synchronized (syncMonitor) {
+                    syncing = false;
+                    if (synced) {
+                        durable = Math.max(durable, target);
+                    }
+                    syncMonitor.notifyAll();
+                }
+            }
+        }
+    }
+
+    synchronized boolean hasWrites() {
+        return hasWrites;
+    }
+
+    // Начинает новый сегмент и возвращает его номер; все записи до него лежат в сегментах с меньшими номерами
+    synchronized long rotate() {
+        try {
+            closeChannel();
+            segment++;
+            channel = open(segment);
+            hasWrites = false;
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rotate cart journal", e);
+        }
+    }
+
+    // Копирует записи указанных пользователей из сегментов до segment в отдельный файл конфликтов,
+    // чтобы удаление сегментов их не уничтожило. Файл не воспроизводится при запуске и нужен для ручного разбора
+    Path retainConflicts(long segment, Set<Long> userIds) {
+        Path conflicts = directory.resolve(String.format("%s%019d%s", CONFLICT_PREFIX, segment, SUFFIX));
+        try (FileChannel out = FileChannel.open(conflicts, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            for (Long existing : segments()) {
+                if (existing >= segment) {
+                    continue;
+                }
+                for (String line : Files.readAllLines(path(existing), StandardCharsets.UTF_8)) {
+                    if (!line.isBlank() && userIds.contains(userIdOf(line))) {
+                        ByteBuffer buffer = StandardCharsets.UTF_8.encode(line + "\n");
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                    }
+                }
+            }
+            if (fsync) {
+                out.force(false);
+            }
+            return conflicts;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write cart journal conflicts to " + conflicts, e);
+        }
+    }
+
+    void deleteBefore(long segment) {
+        try {
+            for (Long existing : segments()) {
+                if (existing < segment) {
+                    Files.deleteIfExists(path(existing));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot delete flushed cart journal segments: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeChannel();
+    }
+
+    // Перед закрытием сегмент сохраняется на диск, и все записанные строки считаются сохраненными
+    private void closeChannel() throws IOException {
+        if (fsync) {
+            channel.force(false);
+            synchronized (syncMonitor) {
+                durable = Math.max(durable, written);
+                syncMonitor.notifyAll();
+            }
+        }
+        channel.close();
+    }
+
+    private Long userIdOf(String line) {
+        try {
+            return objectMapper.readValue(line, CartOp.class).userId();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private FileChannel open(long segment) throws IOException {
+        return FileChannel.open(path(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path path(long segment) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.ithub.cartservice.store;
+
+import java.time.Instant;
+
+// Запись журнала корзин. Позиции хранятся в абсолютных значениях,
+// поэтому повторное применение записи после сбоя не меняет результат
+public record CartOp(Type type,
+                     Long userId,
+                     String username,
+                     Long productId,
+                     String productName,
+                     Long priceMinor,
+                     Integer quantity,
+                     String productImageUrl,
+                     String checkoutId,
+                     Instant checkoutExpiresAt) {
+
+    public enum Type {
+        CREATE, SET_LINE, REMOVE_LINE, CLEAR, LOCK, UNLOCK, COMPLETE
+    }
+
+    public static CartOp create(Long userId, String username) {
+        return new CartOp(Type.CREATE, userId, username, null, null, null, null, null, null, null);
+    }
+
+    public static CartOp setLine(Long userId, Long productId, String productName, long priceMinor,
+                                 int quantity, String productImageUrl) {
+        return new CartOp(Type.SET_LINE, userId, null, productId, productName, priceMinor, quantity, productImageUrl,
+                null, null);
+    }
+
+    public static CartOp removeLine(Long userId, Long productId) {
+        return new CartOp(Type.REMOVE_LINE, userId, null, productId, null, null, null, null, null, null);
+    }
+
+    public static CartOp clear(Long userId) {
+        return new CartOp(Type.CLEAR, userId, null, null, null, null, null, null, null, null);
+    }
+
+    public static CartOp lock(Long userId, String checkoutId, Instant expiresAt) {
+        return new CartOp(Type.LOCK, userId, null, null, null, null, null, null, checkoutId, expiresAt);
+    }
+
+    public static CartOp unlock(Long userId) {
+        return new CartOp(Type.UNLOCK, userId, null, null, null, null, null, null, null, null);
+    }
+
+    // Запоминает завершенное оформление и снимает блокировку
+    public static CartOp complete(Long userId, String checkoutId) {
+        return new CartOp(Type.COMPLETE, userId, null, null, null, null, null, null, checkoutId, null);
+    }
+}
@@ -0,0 +1,48 @@
+package org.ithub.cartservice.store;
+
+import org.ithub.cartservice.model.Cart;
+import org.ithub.cartservice.model.CartItem;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Хранилище корзин. view вызывается, пока корзина защищена от параллельных изменений,
+// поэтому конвертация в DTO должна выполняться внутри view.
+// Изменение корзины, заблокированной для оформления, завершается CartLockedException
+public interface CartStore {
+
+    // Только чтение: если корзины нет, view получает null, и корзина не создается
+    <T> T read(Long userId, Function<Cart, T> view);
+
+    <T> T readById(Long cartId, Function<Cart, T> view);
+
+    // Корзина создается при первом добавлении; username запрашивается только для новой корзины
+    default <T> T addItem(Long userId, Supplier<String> username, CartItem item, Function<Cart, T> view) {
+        return addItems(userId, username, List.of(item), view);
+    }
+
+    // Добавляет позиции одной операцией; количество совпадающих товаров суммируется
+    <T> T addItems(Long userId, Supplier<String> username, List<CartItem> items, Function<Cart, T> view);
+
+    <T> T updateItemQuantity(Long userId, Long productId, int quantity, Function<Cart, T> view);
+
+    <T> T removeItem(Long userId, Long productId, Function<Cart, T> view);
+
+    <T> T clear(Long userId, Function<Cart, T> view);
+
+    // Блокирует непустую корзину до expiresAt и снимает ее снимок через view. Позиции остаются в корзине,
+    // пока оформление не будет завершено или отменено, поэтому сбой заказа ничего не теряет
+    <T> T lockForCheckout(Long userId, String checkoutId, Instant expiresAt, Function<Cart, T> view);
+
+    // Снимает блокировку оформления; чужой или уже снятый checkoutId ничего не меняет.
+    // Если корзины нет, view получает null
+    <T> T releaseCheckout(Long userId, String checkoutId, Function<Cart, T> view);
+
+    // Очищает корзину после фиксации заказа и снимает блокировку; повторный вызов ничего не меняет.
+    // Если блокировка этого оформления уже истекла, из корзины вычитаются только orderedLines
+    // (productId -> количество); пока корзина заблокирована другим оформлением, завершается CartLockedException
+    <T> T completeCheckout(Long userId, String checkoutId, Map<Long, Integer> orderedLines, Function<Cart, T> view);
+}
@@ -0,0 +1,18 @@
+package org.ithub.cartservice.store;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "cart.store")
+public class CartStoreProperties {
+    // jpa - каждая операция в транзакции Postgres, memory - корзины в памяти с журналом и отложенной записью
+    private String mode = "jpa";
+    private int stripes = 64;
+    private int flushBatchSize = 500;
+    private Duration idleTimeout = Duration.ofMinutes(30);
+    private String journalDir = "data/cart-journal";
+    private boolean journalFsync = false;
+}
@@ -0,0 +1,156 @@
+package org.ithub.cartservice.store;
+
+import lombok.RequiredArgsConstructor;
+import org.ithub.cartservice.exception.CartLockedException;
+import org.ithub.cartservice.exception.CartNotFoundException;
+import org.ithub.cartservice.model.Cart;
+import org.ithub.cartservice.model.CartItem;
+import org.ithub.cartservice.repository.CartItemRepository;
+import org.ithub.cartservice.repository.CartRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Корзины читаются и изменяются напрямую в Postgres
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "cart.store.mode", havingValue = "jpa", matchIfMissing = true)
+public class JpaCartStore implements CartStore {
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public <T> T read(Long userId, Function<Cart, T> view) {
+        return view.apply(cartRepository.findWithItemsByUserId(userId).orElse(null));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public <T> T readById(Long cartId, Function<Cart, T> view) {
+        Cart cart = cartRepository.findById(cartId)
+                .orElseThrow(() -> new CartNotFoundException("Cart not found with id: " + cartId));
+        return view.apply(cart);
+    }
+
+    @Override
+    @Transactional
+    public <T> T addItems(Long userId, Supplier<String> username, List<CartItem> items, Function<Cart, T> view) {
+        Cart cart = getOrCreateCart(userId, username);
+        for (CartItem item : items) {
+            CartItem line = cart.addItem(item);
+            if (line.getId() == null) {
+                // Новая позиция вставляется сразу, чтобы получить ее id; остальные изменения
+                // корзины запишутся при фиксации транзакции только для измененных строк
+                cartItemRepository.save(line);
+            }
+        }
+        return view.apply(cart);
+    }
+
+    @Override
+    @Transactional
+    public <T> T updateItemQuantity(Long userId, Long productId, int quantity, Function<Cart, T> view) {
+        Cart cart = findCart(userId);
+        cart.updateItemQuantity(productId, quantity);
+        return view.apply(cart);
+    }
+
+    @Override
+    @Transactional
+    public <T> T removeItem(Long userId, Long productId, Function<Cart, T> view) {
+        Cart cart = findCart(userId);
+        cart.removeItem(productId);
+        return view.apply(cart);
+    }
+
+    @Override
+    @Transactional
+    public <T> T clear(Long userId, Function<Cart, T> view) {
+        Cart cart = findCart(userId);
+        cart.clearCart();
+        return view.apply(cart);
+    }
+
+    @Override
+    @Transactional
+    public <T> T lockForCheckout(Long userId, String checkoutId, Instant expiresAt, Function<Cart, T> view) {
+        Cart cart = findCart(userId);
+        if (cart.getItems().isEmpty()) {
+            throw new IllegalStateException("Cart is empty for user: " + userId);
+        }
+        cart.lockForCheckout(checkoutId, expiresAt);
+        return view.apply(cart);
+    }
+
+    @Override
+    @Transactional
+    public <T> T releaseCheckout(Long userId, String checkoutId, Function<Cart, T> view) {
+        Cart cart = cartRepository.findForUpdateByUserId(userId).orElse(null);
+        if (cart != null && checkoutId.equals(cart.getCheckoutId())) {
+            cart.unlockCheckout();
+        }
+        return view.apply(cart);
+    }
+
+    @Override
+    @Transactional
+    public <T> T completeCheckout(Long userId, String checkoutId, Map<Long, Integer> orderedLines,
+                                  Function<Cart, T> view) {
+        Cart cart = cartRepository.findForUpdateByUserId(userId).orElse(null);
+        if (cart == null || checkoutId.equals(cart.getCompletedCheckoutId())) {
+            return view.apply(cart);
+        }
+        if (checkoutId.equals(cart.getCheckoutId()) && cart.isLockedForCheckout(Instant.now())) {
+            cart.clearCart();
+        } else {
+            ensureNotLocked(cart);
+            orderedLines.forEach((productId, quantity) -> {
+                CartItem item = cart.getItems().get(productId);
+                if (item == null) {
+                    return;
+                }
+                if (item.getQuantity() <= quantity) {
+                    cart.removeItem(productId);
+                } else {
+                    cart.updateItemQuantity(productId, item.getQuantity() - quantity);
+                }
+            });
+        }
+        cart.completeCheckout(checkoutId);
+        return view.apply(cart);
+    }
+
+    // Загружает корзину под блокировкой строки; истекшая блокировка оформления снимается
+    private Cart findCart(Long userId) {
+        Cart cart = cartRepository.findForUpdateByUserId(userId)
+                .orElseThrow(() -> new CartNotFoundException("Cart not found for user: " + userId));
+        return ensureNotLocked(cart);
+    }
+
+    // Получает существующую корзину пользователя или создает новую
+    private Cart getOrCreateCart(Long userId, Supplier<String> username) {
+        return cartRepository.findForUpdateByUserId(userId).map(this::ensureNotLocked).orElseGet(() -> {
+            Cart newCart = new Cart();
+            newCart.setUserId(userId);
+            newCart.setUsername(username.get());
+            return cartRepository.save(newCart);
+        });
+    }
+
+    private Cart ensureNotLocked(Cart cart) {
+        if (cart.isLockedForCheckout(Instant.now())) {
+            throw new CartLockedException("Cart is locked for checkout for user: " + cart.getUserId());
+        }
+        if (cart.getCheckoutId() != null) {
+            cart.unlockCheckout();
+        }
+        return cart;
+    }
+}
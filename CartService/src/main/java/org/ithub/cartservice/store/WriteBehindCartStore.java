@@ -0,0 +1,615 @@
+package org.ithub.cartservice.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.cartservice.exception.CartLockedException;
+import org.ithub.cartservice.exception.CartNotFoundException;
+import org.ithub.cartservice.model.Cart;
+import org.ithub.cartservice.model.CartItem;
+import org.ithub.cartservice.repository.CartRepository;
+import org.ithub.money.Money;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Активные корзины хранятся в памяти, разбитые на полосы с отдельной блокировкой:
+// операции разных пользователей почти никогда не ждут друг друга.
+// Каждое изменение сначала пишется в локальный журнал, затем применяется в памяти,
+// а в Postgres измененные корзины выгружаются пачками по расписанию.
+// Режим рассчитан на то, что корзину пользователя обслуживает один экземпляр сервиса. Если строку корзины
+// изменил кто-то другой, выгрузка замечает это по версии, не перезаписывает ее и перечитывает корзину из базы,
+// а записи журнала этой корзины сохраняются в файл конфликтов
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cart.store.mode", havingValue = "memory")
+public class WriteBehindCartStore implements CartStore {
+    private final CartRepository cartRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final CartStoreProperties properties;
+    private final CartJournal journal;
+    private final Stripe[] stripes;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Counter flushFailures;
+    private final Counter flushConflicts;
+    private volatile boolean retryPending;
+
+    public WriteBehindCartStore(CartRepository cartRepository,
+                                EntityManager entityManager,
+                                TransactionTemplate transactionTemplate,
+                                CartStoreProperties properties,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+        this.cartRepository = cartRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.journal = new CartJournal(Path.of(properties.getJournalDir()), properties.isJournalFsync(), objectMapper);
+        int size = Integer.highestOneBit(Math.max(1, properties.getStripes() * 2 - 1));
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        Gauge.builder("cart.store.resident", this, WriteBehindCartStore::residentCarts)
+                .description("Carts currently held in memory")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("cart.store.flush.failures")
+                .description("Cart batches that failed to flush to the database")
+                .register(meterRegistry);
+        this.flushConflicts = Counter.builder("cart.store.flush.conflicts")
+                .description("Carts dropped from memory because their database row was changed elsewhere")
+                .register(meterRegistry);
+    }
+
+    // Восстанавливает изменения, не успевшие попасть в базу до остановки, и сразу выгружает их
+    @PostConstruct
+    public void recover() {
+        List<CartOp> ops = journal.replay();
+        if (ops.isEmpty()) {
+            return;
+        }
+        for (CartOp op : ops) {
+            withSlot(op.userId(), slot -> {
+                if (op.type() != CartOp.Type.CREATE && slot.cart == null) {
+                    log.warn("Skipping journal record {} for missing cart of user {}", op.type(), op.userId());
+                    return null;
+                }
+                apply(slot, op);
+                slot.dirty = true;
+                return null;
+            });
+        }
+        retryPending = true;
+        log.info("Recovered {} cart journal records", ops.size());
+        flush();
+    }
+
+    // Отсутствие корзины тоже кешируется в памяти, поэтому повторные чтения пустой корзины не идут в базу
+    @Override
+    public <T> T read(Long userId, Function<Cart, T> view) {
+        return withSlot(userId, slot -> view.apply(slot.cart));
+    }
+
+    // Корзины адресуются по пользователю, поэтому id переводится в userId через базу.
+    // Корзина, еще не выгруженная в базу, по id не находится
+    @Override
+    public <T> T readById(Long cartId, Function<Cart, T> view) {
+        Long userId = cartRepository.findById(cartId)
+                .map(Cart::getUserId)
+                .orElseThrow(() -> new CartNotFoundException("Cart not found with id: " + cartId));
+        return withSlot(userId, slot -> view.apply(slot.cart));
+    }
+
+    @Override
+    public <T> T addItems(Long userId, Supplier<String> username, List<CartItem> items, Function<Cart, T> view) {
+        String name = resolveUsername(userId, username);
+        return withSlot(userId, slot -> {
+            if (slot.cart == null) {
+                write(slot, CartOp.create(userId, name));
+            } else {
+                ensureNotLocked(slot, userId);
+            }
+            for (CartItem item : items) {
+                CartItem existing = slot.cart.getItems().get(item.getProductId());
+                int quantity = existing == null ? item.getQuantity() : existing.getQuantity() + item.getQuantity();
+                write(slot, CartOp.setLine(userId, item.getProductId(), item.getProductName(),
+                        item.getPrice().minorUnits(), quantity, item.getProductImageUrl()));
+            }
+            return view.apply(slot.cart);
+        });
+    }
+
+    @Override
+    public <T> T updateItemQuantity(Long userId, Long productId, int quantity, Function<Cart, T> view) {
+        return mutate(userId, slot -> {
+            CartItem existing = requireCart(slot, userId).getItems().get(productId);
+            return existing == null ? null : CartOp.setLine(userId, productId, existing.getProductName(),
+                    existing.getPrice().minorUnits(), quantity, existing.getProductImageUrl());
+        }, view);
+    }
+
+    @Override
+    public <T> T removeItem(Long userId, Long productId, Function<Cart, T> view) {
+        return mutate(userId, slot -> requireCart(slot, userId).getItems().containsKey(productId)
+                ? CartOp.removeLine(userId, productId) : null, view);
+    }
+
+    @Override
+    public <T> T clear(Long userId, Function<Cart, T> view) {
+        return mutate(userId, slot -> {
+            requireCart(slot, userId);
+            return CartOp.clear(userId);
+        }, view);
+    }
+
+    @Override
+    public <T> T lockForCheckout(Long userId, String checkoutId, Instant expiresAt, Function<Cart, T> view) {
+        return mutate(userId, slot -> {
+            if (requireCart(slot, userId).getItems().isEmpty()) {
+                throw new IllegalStateException("Cart is empty for user: " + userId);
+            }
+            return CartOp.lock(userId, checkoutId, expiresAt);
+        }, view);
+    }
+
+    @Override
+    public <T> T releaseCheckout(Long userId, String checkoutId, Function<Cart, T> view) {
+        return withSlot(userId, slot -> {
+            if (slot.cart != null && checkoutId.equals(slot.cart.getCheckoutId())) {
+                write(slot, CartOp.unlock(userId));
+            }
+            return view.apply(slot.cart);
+        });
+    }
+
+    @Override
+    public <T> T completeCheckout(Long userId, String checkoutId, Map<Long, Integer> orderedLines,
+                                  Function<Cart, T> view) {
+        return withSlot(userId, slot -> {
+            if (slot.cart == null || checkoutId.equals(slot.cart.getCompletedCheckoutId())) {
+                return view.apply(slot.cart);
+            }
+            if (checkoutId.equals(slot.cart.getCheckoutId()) && slot.cart.isLockedForCheckout(Instant.now())) {
+                write(slot, CartOp.clear(userId));
+            } else {
+                ensureNotLocked(slot, userId);
+                orderedLines.forEach((productId, quantity) -> {
+                    CartItem item = slot.cart.getItems().get(productId);
+                    if (item == null) {
+                        return;
+                    }
+                    write(slot, item.getQuantity() <= quantity
+                            ? CartOp.removeLine(userId, productId)
+                            : CartOp.setLine(userId, productId, item.getProductName(), item.getPrice().minorUnits(),
+                                    item.getQuantity() - quantity, item.getProductImageUrl()));
+                });
+            }
+            write(slot, CartOp.complete(userId, checkoutId));
+            return view.apply(slot.cart);
+        });
+    }
+
+    // Выгружает измененные корзины в базу. Журнал переключается на новый сегмент до снятия снимков,
+    // поэтому после успешной выгрузки все старые сегменты можно удалить
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval:1000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!journal.hasWrites() && !retryPending) {
+                return;
+            }
+            long segment = journal.rotate();
+            List<CartSnapshot> snapshots = collectDirty();
+            Set<Long> conflicts = new HashSet<>();
+            boolean flushed = true;
+            for (int from = 0; from < snapshots.size(); from += properties.getFlushBatchSize()) {
+                List<CartSnapshot> batch = snapshots.subList(from,
+                        Math.min(from + properties.getFlushBatchSize(), snapshots.size()));
+                try {
+                    FlushResult result = transactionTemplate.execute(status -> persist(batch));
+                    assignIds(result.saved());
+                    dropConflicts(result.conflicts());
+                    conflicts.addAll(result.conflicts());
+                } catch (Exception e) {
+                    flushed = false;
+                    flushFailures.increment();
+                    log.error("Failed to flush {} carts: {}", batch.size(), e.getMessage());
+                    batch.forEach(snapshot -> withLoadedSlot(snapshot.userId(), slot -> {
+                        slot.dirty = true;
+                        slot.flushing = false;
+                    }));
+                }
+            }
+            if (flushed && !conflicts.isEmpty()) {
+                flushed = retainConflicts(segment, conflicts);
+            }
+            retryPending = !flushed;
+            if (flushed) {
+                journal.deleteBefore(segment);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Вытесняет корзины, к которым давно не обращались; несохраненные и выгружаемые корзины остаются в памяти
+    @Scheduled(fixedDelayString = "${cart.store.eviction-interval:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - properties.getIdleTimeout().toMillis();
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                int before = stripe.carts.size();
+                stripe.carts.values().removeIf(slot -> !slot.dirty && !slot.flushing && slot.lastAccess < cutoff);
+                evicted += before - stripe.carts.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        if (evicted > 0) {
+            log.info("Evicted {} idle carts from memory", evicted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        journal.close();
+    }
+
+    private <T> T mutate(Long userId, Function<Slot, CartOp> change, Function<Cart, T> view) {
+        return withSlot(userId, slot -> {
+            ensureNotLocked(slot, userId);
+            CartOp op = change.apply(slot);
+            if (op != null) {
+                write(slot, op);
+            }
+            return view.apply(slot.cart);
+        });
+    }
+
+    // Запись в журнал выполняется до изменения корзины в памяти. Сохранения строки на диск
+    // вызывающий поток ждет уже после снятия блокировки полосы, см. withSlot
+    private void write(Slot slot, CartOp op) {
+        slot.journalSequence = journal.append(op);
+        apply(slot, op);
+        slot.dirty = true;
+    }
+
+    private void apply(Slot slot, CartOp op) {
+        switch (op.type()) {
+            case CREATE -> {
+                if (slot.cart == null) {
+                    Cart cart = new Cart();
+                    cart.setUserId(op.userId());
+                    cart.setUsername(op.username());
+                    slot.cart = cart;
+                }
+            }
+            case SET_LINE -> {
+                if (slot.cart.getItems().containsKey(op.productId())) {
+                    slot.cart.updateItemQuantity(op.productId(), op.quantity());
+                } else {
+                    CartItem item = new CartItem();
+                    item.setProductId(op.productId());
+                    item.setProductName(op.productName());
+                    item.setPrice(Money.ofMinor(op.priceMinor()));
+                    item.setQuantity(op.quantity());
+                    item.setProductImageUrl(op.productImageUrl());
+                    slot.cart.addItem(item);
+                }
+            }
+            case REMOVE_LINE -> slot.cart.removeItem(op.productId());
+            case CLEAR -> slot.cart.clearCart();
+            case LOCK -> slot.cart.lockForCheckout(op.checkoutId(), op.checkoutExpiresAt());
+            case UNLOCK -> slot.cart.unlockCheckout();
+            case COMPLETE -> slot.cart.completeCheckout(op.checkoutId());
+        }
+    }
+
+    // Истекшая блокировка оформления снимается записью в журнал перед изменением
+    private void ensureNotLocked(Slot slot, Long userId) {
+        if (slot.cart == null || slot.cart.getCheckoutId() == null) {
+            return;
+        }
+        if (slot.cart.isLockedForCheckout(Instant.now())) {
+            throw new CartLockedException("Cart is locked for checkout for user: " + userId);
+        }
+        write(slot, CartOp.unlock(userId));
+    }
+
+    private Cart requireCart(Slot slot, Long userId) {
+        if (slot.cart == null) {
+            throw new CartNotFoundException("Cart not found for user: " + userId);
+        }
+        return slot.cart;
+    }
+
+    // Имя пользователя запрашивается у UserService вне блокировки и только если корзины еще нет
+    private String resolveUsername(Long userId, Supplier<String> username) {
+        boolean exists = withSlot(userId, slot -> slot.cart != null);
+        return exists ? null : username.get();
+    }
+
+    // Выполняет действие под блокировкой полосы пользователя. Промах загружается из базы вне блокировки,
+    // чтобы запрос к Postgres не задерживал других пользователей той же полосы.
+    // Результат возвращается только после того, как последняя запись журнала корзины сохранена на диск;
+    // fsync ждется вне блокировки, поэтому другие пользователи полосы в это время не блокируются
+    private <T> T withSlot(Long userId, Function<Slot, T> action) {
+        Stripe stripe = stripe(userId);
+        Applied<T> applied = null;
+        stripe.lock.lock();
+        try {
+            Slot slot = stripe.carts.get(userId);
+            if (slot != null) {
+                applied = applyAction(slot, action);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        if (applied == null) {
+            Slot loaded = new Slot(load(userId));
+            stripe.lock.lock();
+            try {
+                Slot slot = stripe.carts.putIfAbsent(userId, loaded);
+                applied = applyAction(slot == null ? loaded : slot, action);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        journal.awaitDurable(applied.journalSequence());
+        return applied.result();
+    }
+
+    private <T> Applied<T> applyAction(Slot slot, Function<Slot, T> action) {
+        slot.lastAccess = System.currentTimeMillis();
+        T result = action.apply(slot);
+        return new Applied<>(result, slot.journalSequence);
+    }
+
+    private void withLoadedSlot(Long userId, Consumer<Slot> action) {
+        Stripe stripe = stripe(userId);
+        stripe.lock.lock();
+        try {
+            Slot slot = stripe.carts.get(userId);
+            if (slot != null) {
+                action.accept(slot);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    // Копия корзины из базы без связи с сессией Hibernate
+    private Cart load(Long userId) {
+        return cartRepository.findWithItemsByUserId(userId).map(stored -> {
+            Cart cart = new Cart();
+            cart.setId(stored.getId());
+            cart.setUserId(stored.getUserId());
+            cart.setUsername(stored.getUsername());
+            cart.setVersion(stored.getVersion());
+            cart.lockForCheckout(stored.getCheckoutId(), stored.getCheckoutExpiresAt());
+            cart.setCompletedCheckoutId(stored.getCompletedCheckoutId());
+            for (CartItem storedItem : stored.getItems().values()) {
+                CartItem item = new CartItem();
+                item.setId(storedItem.getId());
+                item.setProductId(storedItem.getProductId());
+                item.setProductName(storedItem.getProductName());
+                item.setPrice(storedItem.getPrice());
+                item.setQuantity(storedItem.getQuantity());
+                item.setProductImageUrl(storedItem.getProductImageUrl());
+                cart.addItem(item);
+            }
+            return cart;
+        }).orElse(null);
+    }
+
+    // Снятые корзины закрепляются в памяти до конца выгрузки, чтобы при ошибке их можно было снова пометить
+    private List<CartSnapshot> collectDirty() {
+        List<CartSnapshot> snapshots = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (Slot slot : stripe.carts.values()) {
+                    if (slot.dirty && slot.cart != null) {
+                        snapshots.add(CartSnapshot.of(slot.cart));
+                        slot.dirty = false;
+                        slot.flushing = true;
+                    }
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return snapshots;
+    }
+
+    // Приводит строки корзин в базе к снимкам; все корзины пачки загружаются одним запросом.
+    // Корзина, версия которой в базе не совпадает с версией снимка, не записывается и возвращается как конфликт
+    private FlushResult persist(List<CartSnapshot> batch) {
+        Map<Long, Cart> stored = new HashMap<>();
+        for (Cart cart : cartRepository.findAllByUserIdIn(batch.stream().map(CartSnapshot::userId).toList())) {
+            stored.put(cart.getUserId(), cart);
+        }
+        Map<Long, Cart> carts = new HashMap<>();
+        List<Long> conflicts = new ArrayList<>();
+        for (CartSnapshot snapshot : batch) {
+            Cart cart = stored.get(snapshot.userId());
+            Long storedVersion = cart == null ? null : cart.getVersion();
+            if (!Objects.equals(storedVersion, snapshot.version())) {
+                log.warn("Cart of user {} changed in the database (version {} instead of {}), keeping {} in-memory lines in the conflicts file",
+                        snapshot.userId(), storedVersion, snapshot.version(), snapshot.lines().size());
+                conflicts.add(snapshot.userId());
+                continue;
+            }
+            if (cart == null) {
+                cart = new Cart();
+                cart.setUserId(snapshot.userId());
+                cart.setUsername(snapshot.username());
+            } else {
+                // Версия растет при каждой выгрузке, даже если изменились только позиции
+                entityManager.lock(cart, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            }
+            carts.put(snapshot.userId(), cart);
+            cart.lockForCheckout(snapshot.checkoutId(), snapshot.checkoutExpiresAt());
+            cart.setCompletedCheckoutId(snapshot.completedCheckoutId());
+            List<Long> removed = new ArrayList<>();
+            for (Long productId : cart.getItems().keySet()) {
+                if (!snapshot.lines().containsKey(productId)) {
+                    removed.add(productId);
+                }
+            }
+            removed.forEach(cart.getItems()::remove);
+            for (CartItem line : snapshot.lines().values()) {
+                CartItem item = cart.getItems().get(line.getProductId());
+                if (item == null) {
+                    item = new CartItem();
+                    item.setCart(cart);
+                    item.setProductId(line.getProductId());
+                    cart.getItems().put(line.getProductId(), item);
+                }
+                item.setProductName(line.getProductName());
+                item.setPrice(line.getPrice());
+                item.setQuantity(line.getQuantity());
+                item.setProductImageUrl(line.getProductImageUrl());
+            }
+            cart.recalculateTotal();
+        }
+        List<Cart> saved = cartRepository.saveAll(carts.values());
+        cartRepository.flush();
+        return new FlushResult(saved, conflicts);
+    }
+
+    // Переносит сгенерированные базой id и новые версии в корзины в памяти и снимает закрепление
+    private void assignIds(List<Cart> saved) {
+        for (Cart stored : saved) {
+            withLoadedSlot(stored.getUserId(), slot -> {
+                slot.flushing = false;
+                if (slot.cart == null) {
+                    return;
+                }
+                slot.cart.setVersion(stored.getVersion());
+                if (slot.cart.getId() == null) {
+                    slot.cart.setId(stored.getId());
+                }
+                for (CartItem storedItem : stored.getItems().values()) {
+                    CartItem item = slot.cart.getItems().get(storedItem.getProductId());
+                    if (item != null && item.getId() == null) {
+                        item.setId(storedItem.getId());
+                    }
+                }
+            });
+        }
+    }
+
+    // Корзина, измененная в базе не этим экземпляром, убирается из памяти и при следующем обращении
+    // загружается заново. Чужие строки не перезаписываются, а несохраненные изменения остаются в файле конфликтов
+    private void dropConflicts(List<Long> userIds) {
+        for (Long userId : userIds) {
+            flushConflicts.increment();
+            Stripe stripe = stripe(userId);
+            stripe.lock.lock();
+            try {
+                stripe.carts.remove(userId);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    // Сохраняет записи журнала конфликтных корзин до удаления сегментов. Если сохранить не удалось,
+    // выгрузка считается неуспешной и сегменты остаются на диске
+    private boolean retainConflicts(long segment, Set<Long> userIds) {
+        try {
+            Path conflicts = journal.retainConflicts(segment, userIds);
+            log.error("Unsaved changes of {} conflicting carts kept in {} for manual reconciliation",
+                    userIds.size(), conflicts);
+            return true;
+        } catch (UncheckedIOException e) {
+            flushFailures.increment();
+            log.error("Failed to keep journal records of conflicting carts {}: {}", userIds, e.getMessage());
+            return false;
+        }
+    }
+
+    private Stripe stripe(Long userId) {
+        int hash = Long.hashCode(userId);
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private double residentCarts() {
+        int resident = 0;
+        for (Stripe stripe : stripes) {
+            resident += stripe.carts.size();
+        }
+        return resident;
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, Slot> carts = new HashMap<>();
+    }
+
+    // Корзина пользователя в памяти; cart == null означает, что корзины нет ни в памяти, ни в базе
+    private static final class Slot {
+        private Cart cart;
+        private long lastAccess;
+        private boolean dirty;
+        // Снимок корзины сейчас записывается в базу
+        private boolean flushing;
+        // Номер последней записи журнала этой корзины
+        private long journalSequence;
+
+        private Slot(Cart cart) {
+            this.cart = cart;
+        }
+    }
+
+    private record CartSnapshot(Long userId, String username, Long version, String checkoutId,
+                                Instant checkoutExpiresAt, String completedCheckoutId, Map<Long, CartItem> lines) {
+        static CartSnapshot of(Cart cart) {
+            Map<Long, CartItem> lines = new LinkedHashMap<>();
+            for (CartItem item : cart.getItems().values()) {
+                lines.put(item.getProductId(), new CartItem(null, null, item.getProductId(), item.getProductName(),
+                        item.getPrice(), item.getQuantity(), item.getProductImageUrl()));
+            }
+            return new CartSnapshot(cart.getUserId(), cart.getUsername(), cart.getVersion(), cart.getCheckoutId(),
+                    cart.getCheckoutExpiresAt(), cart.getCompletedCheckoutId(), lines);
+        }
+    }
+
+    private record FlushResult(List<Cart> saved, List<Long> conflicts) {
+    }
+
+    private record Applied<T>(T result, long journalSequence) {
+    }
+}
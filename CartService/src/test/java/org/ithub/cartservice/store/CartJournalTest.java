@@ -0,0 +1,67 @@
+package org.ithub.cartservice.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CartJournalTest {
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path directory;
+
+    // Недописанная последняя строка после аварийной остановки пропускается, предыдущие записи воспроизводятся
+    @Test
+    void replaySkipsTornLastLine() throws IOException {
+        CartJournal journal = new CartJournal(directory, false, objectMapper);
+        journal.append(CartOp.create(1L, "alice"));
+        journal.append(CartOp.setLine(1L, 10L, "Book", 1500, 2, null));
+        journal.close();
+        Files.writeString(onlySegment(), "{\"type\":\"SET_LINE\",\"userId\":1,\"produ",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<CartOp> ops = new CartJournal(directory, false, objectMapper).replay();
+
+        assertThat(ops).extracting(CartOp::type).containsExactly(CartOp.Type.CREATE, CartOp.Type.SET_LINE);
+        assertThat(ops.get(1).quantity()).isEqualTo(2);
+    }
+
+    // Записи конфликтных пользователей переносятся в файл конфликтов, который не воспроизводится при запуске
+    @Test
+    void retainConflictsKeepsOnlyListedUsers() throws IOException {
+        CartJournal journal = new CartJournal(directory, false, objectMapper);
+        journal.append(CartOp.create(1L, "alice"));
+        journal.append(CartOp.create(2L, "bob"));
+        journal.append(CartOp.setLine(1L, 10L, "Book", 1500, 1, null));
+        long segment = journal.rotate();
+
+        Path conflicts = journal.retainConflicts(segment, Set.of(1L));
+        journal.deleteBefore(segment);
+        journal.close();
+
+        List<String> lines = Files.readAllLines(conflicts, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(2).allMatch(line -> line.contains("\"userId\":1"));
+        assertThat(new CartJournal(directory, false, objectMapper).replay()).isEmpty();
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("cart-journal-"))
+                    .filter(file -> file.toFile().length() > 0)
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+}
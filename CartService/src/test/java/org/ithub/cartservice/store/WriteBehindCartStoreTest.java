@@ -0,0 +1,158 @@
+package org.ithub.cartservice.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.ithub.cartservice.model.Cart;
+import org.ithub.cartservice.model.CartItem;
+import org.ithub.cartservice.repository.CartRepository;
+import org.ithub.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteBehindCartStoreTest {
+    private static final Long USER_ID = 1L;
+
+    @TempDir
+    Path directory;
+
+    private CartRepository cartRepository;
+    private WriteBehindCartStore store;
+
+    @BeforeEach
+    void setUp() {
+        cartRepository = mock(CartRepository.class);
+        when(cartRepository.findWithItemsByUserId(anyLong())).thenReturn(Optional.empty());
+        when(cartRepository.findAllByUserIdIn(anyCollection())).thenReturn(List.of());
+        when(cartRepository.saveAll(anyCollection())).thenAnswer(invocation -> new ArrayList<>(
+                invocation.<Collection<Cart>>getArgument(0)));
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        CartStoreProperties properties = new CartStoreProperties();
+        properties.setMode("memory");
+        properties.setStripes(4);
+        properties.setIdleTimeout(Duration.ZERO);
+        properties.setJournalDir(directory.toString());
+
+        store = new WriteBehindCartStore(cartRepository, mock(EntityManager.class), transactionTemplate, properties,
+                new ObjectMapper().registerModule(new JavaTimeModule()), new SimpleMeterRegistry());
+    }
+
+    // После неудачной выгрузки корзина снова помечается измененной, а журнал сохраняется до успешной попытки
+    @Test
+    void failedBatchMarksCartsDirtyAgain() throws IOException {
+        addBook();
+        when(cartRepository.saveAll(anyCollection()))
+                .thenThrow(new DataAccessResourceFailureException("database is down"))
+                .thenAnswer(invocation -> new ArrayList<>(invocation.<Collection<Cart>>getArgument(0)));
+
+        store.flush();
+        assertThat(journalRecords()).isNotEmpty();
+
+        store.flush();
+        verify(cartRepository, times(2)).saveAll(anyCollection());
+        assertThat(journalRecords()).isEmpty();
+    }
+
+    // Конфликтная корзина перечитывается из базы, а ее несохраненные записи остаются в файле конфликтов
+    @Test
+    void conflictKeepsJournalRecordsAndReloadsCart() throws IOException {
+        addBook();
+        Cart changedElsewhere = new Cart();
+        changedElsewhere.setUserId(USER_ID);
+        changedElsewhere.setVersion(3L);
+        when(cartRepository.findAllByUserIdIn(anyCollection())).thenReturn(List.of(changedElsewhere));
+
+        store.flush();
+
+        assertThat(journalRecords()).isEmpty();
+        List<String> conflicts = conflictRecords();
+        assertThat(conflicts).hasSize(2);
+        assertThat(conflicts.get(1)).contains("\"productId\":10");
+        store.read(USER_ID, cart -> cart);
+        verify(cartRepository, times(2)).findWithItemsByUserId(USER_ID);
+    }
+
+    // Несохраненная корзина не вытесняется, даже если к ней давно не обращались
+    @Test
+    void evictionSkipsDirtyCart() throws InterruptedException {
+        addBook();
+        Thread.sleep(5);
+
+        store.evictIdle();
+
+        assertThat(store.read(USER_ID, cart -> cart.getItems().size())).isEqualTo(1);
+        verify(cartRepository, times(1)).findWithItemsByUserId(USER_ID);
+    }
+
+    // Корзина, которая прямо сейчас записывается в базу, не вытесняется; после выгрузки вытесняется как обычно
+    @Test
+    void evictionSkipsFlushingCart() throws InterruptedException {
+        addBook();
+        Thread.sleep(5);
+        when(cartRepository.saveAll(anyCollection())).thenAnswer(invocation -> {
+            store.evictIdle();
+            return new ArrayList<>(invocation.<Collection<Cart>>getArgument(0));
+        });
+
+        store.flush();
+        assertThat(store.read(USER_ID, cart -> cart.getItems().size())).isEqualTo(1);
+        verify(cartRepository, times(1)).findWithItemsByUserId(USER_ID);
+
+        Thread.sleep(5);
+        store.evictIdle();
+        store.read(USER_ID, cart -> cart);
+        verify(cartRepository, times(2)).findWithItemsByUserId(USER_ID);
+    }
+
+    private void addBook() {
+        CartItem item = new CartItem(null, null, 10L, "Book", Money.ofMinor(1500), 1, null);
+        store.addItems(USER_ID, () -> "alice", List.of(item), cart -> cart);
+    }
+
+    private List<String> journalRecords() throws IOException {
+        return records("cart-journal-");
+    }
+
+    private List<String> conflictRecords() throws IOException {
+        return records("cart-conflicts-");
+    }
+
+    private List<String> records(String prefix) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().toList()) {
+                lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+            }
+        }
+        return lines;
+    }
+}
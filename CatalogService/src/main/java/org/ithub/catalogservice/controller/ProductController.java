@@ -3,14 +3,23 @@ package org.ithub.catalogservice.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.catalogservice.dto.ProductPage;
 import org.ithub.catalogservice.model.Product;
+import org.ithub.catalogservice.search.AutocompleteStats;
+import org.ithub.catalogservice.search.ProductSuggestion;
 import org.ithub.catalogservice.service.ProductService;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -19,13 +28,35 @@ import java.util.Map;
 @RequiredArgsConstructor
 @RequestMapping("/api/catalog")
 public class ProductController {
+    private static final String INTERNAL_CALL_HEADER = "X-Internal-Call";
+
     private final ProductService productService;
 
     @GetMapping("/{id}")
     @Operation(summary = "Получить товар по ID")
-    public ResponseEntity<Product> findProductById(@PathVariable Long id){
+    public ResponseEntity<Product> findProductById(@PathVariable Long id,
+                                                   @RequestHeader(value = INTERNAL_CALL_HEADER, required = false)
+                                                   String internalCaller) {
         log.info("Request to get product with id: {}", id);
-        return ResponseEntity.ok(productService.findById(id));
+        Product product = productService.findById(id);
+        // Просмотрами считаются только запросы пользователей; сервисы помечают свои запросы заголовком
+        if (internalCaller == null) {
+            productService.recordView(id);
+        }
+        // При совпадении If-None-Match Spring сам ответит 304 без тела
+        return ResponseEntity.ok()
+                .eTag(productETag(product))
+                .body(product);
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Получить товары по списку ID")
+    public ResponseEntity<List<Product>> findProductsByIds(@RequestBody List<Long> ids) {
+        log.info("Request to get products with ids: {}", ids);
+        if (ids.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        return ResponseEntity.ok(productService.findAllByIds(ids));
     }
 
     @PutMapping("/{id}")
@@ -50,11 +81,45 @@ public class ProductController {
         return ResponseEntity.ok(productService.search(keyword));
     }
 
+    @GetMapping("/autocomplete")
+    @Operation(summary = "Подсказки по началу названия товара")
+    public ResponseEntity<List<ProductSuggestion>> autocomplete(@RequestParam String prefix,
+                                                                @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productService.suggest(prefix, limit));
+    }
+
+    @GetMapping("/autocomplete/stats")
+    @Operation(summary = "Статистика индекса автодополнения")
+    public ResponseEntity<AutocompleteStats> autocompleteStats() {
+        return ResponseEntity.ok(productService.autocompleteStats());
+    }
+
+    @GetMapping
+    @Operation(summary = "Получить страницу товаров (id, name, price, available) с выбором полей")
+    public ResponseEntity<ProductPage<?>> findProductPage(
+            @PageableDefault(size = 50, sort = "id") Pageable pageable,
+            @RequestParam(required = false) List<String> fields) {
+        log.info("Request to get products page {} with fields {}", pageable, fields);
+        if (fields == null || fields.isEmpty()) {
+            return ResponseEntity.ok(productService.findPage(pageable));
+        }
+        return ResponseEntity.ok(productService.findPage(pageable, new LinkedHashSet<>(fields)));
+    }
+
     @GetMapping("/all")
-    @Operation(summary = "Получить все товары")
-    public ResponseEntity<List<Product>> findAllProduct(){
+    @Operation(summary = "Получить все товары (потоковая выгрузка)")
+    public ResponseEntity<StreamingResponseBody> findAllProduct(WebRequest request){
         log.info("Request to get all products");
-        return ResponseEntity.ok(productService.findAll());
+        // Версию каталога проверяем до загрузки товаров: сводный запрос вместо выгрузки всей таблицы
+        String eTag = "\"c" + productService.getCatalogVersion() + "\"";
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        StreamingResponseBody body = productService::exportAll;
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     @PostMapping
@@ -73,12 +138,12 @@ public class ProductController {
         }
 
         List<Product> testProducts = List.of(
-                new Product("PC", "PC desc", new BigDecimal(100000), true),
-                new Product("Laptop", "Laptop desc", new BigDecimal(150000), true),
-                new Product("Phone", "Phone desc", new BigDecimal(70000), false),
-                new Product("Mouse", "Mouse desc", new BigDecimal(5000), true),
-                new Product("Keyboard", "Keyboard desc", new BigDecimal(13000), false),
-                new Product("Monitor", "Monitor desc", new BigDecimal(35000), true)
+                new Product("PC", "PC desc", new BigDecimal(100000), true, 50),
+                new Product("Laptop", "Laptop desc", new BigDecimal(150000), true, 30),
+                new Product("Phone", "Phone desc", new BigDecimal(70000), false, 0),
+                new Product("Mouse", "Mouse desc", new BigDecimal(5000), true, 200),
+                new Product("Keyboard", "Keyboard desc", new BigDecimal(13000), false, 0),
+                new Product("Monitor", "Monitor desc", new BigDecimal(35000), true, 40)
         );
 
         productService.saveAll(testProducts);
@@ -87,6 +152,10 @@ public class ProductController {
                 .body("Тестовые продукты созданы успешно.");
     }
 
+    private String productETag(Product product) {
+        return "\"p" + product.getId() + "-v" + product.getVersion() + "\"";
+    }
+
     @ExceptionHandler({IllegalArgumentException.class, IllegalStateException.class})
     public ResponseEntity<Map<String, String>> handleBadRequestException(Exception e) {
         Map<String, String> response = new HashMap<>();
@@ -0,0 +1,87 @@
+package org.ithub.catalogservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.catalogservice.dto.StockCommitRequest;
+import org.ithub.catalogservice.dto.StockLevel;
+import org.ithub.catalogservice.dto.StockReservationRequest;
+import org.ithub.catalogservice.dto.StockReservationResponse;
+import org.ithub.catalogservice.dto.StockRestockRequest;
+import org.ithub.catalogservice.exception.InsufficientStockException;
+import org.ithub.catalogservice.exception.ReservationNotFoundException;
+import org.ithub.catalogservice.service.StockReservationService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/stock")
+public class StockReservationController {
+    private final StockReservationService stockReservationService;
+
+    @PostMapping("/reservations")
+    @Operation(summary = "Зарезервировать товары (все позиции или ни одной)")
+    public ResponseEntity<StockReservationResponse> reserve(@Valid @RequestBody StockReservationRequest request) {
+        log.info("Request to reserve stock: {}", request.lines());
+        return new ResponseEntity<>(stockReservationService.reserve(request), HttpStatus.CREATED);
+    }
+
+    @PostMapping("/reservations/{reservationId}/commit")
+    @Operation(summary = "Подтвердить резерв и списать товары (повтор с тем же reservationId ничего не меняет)")
+    public ResponseEntity<Void> commit(@PathVariable String reservationId,
+                                       @Valid @RequestBody(required = false) StockCommitRequest request) {
+        log.info("Request to commit stock reservation: {}", reservationId);
+        stockReservationService.commit(reservationId, request);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @Operation(summary = "Отменить резерв")
+    public ResponseEntity<Void> release(@PathVariable String reservationId) {
+        log.info("Request to release stock reservation: {}", reservationId);
+        stockReservationService.release(reservationId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/restocks")
+    @Operation(summary = "Вернуть товары на склад (повтор с тем же restockId ничего не меняет)")
+    public ResponseEntity<Void> restock(@Valid @RequestBody StockRestockRequest request) {
+        log.info("Request to restock {}: {}", request.restockId(), request.lines());
+        stockReservationService.restock(request);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/{productId}")
+    @Operation(summary = "Текущий остаток товара с учетом резервов")
+    public ResponseEntity<StockLevel> getStockLevel(@PathVariable Long productId) {
+        return ResponseEntity.ok(stockReservationService.getStockLevel(productId));
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<Map<String, String>> handleConflictException(Exception e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    @ExceptionHandler(ReservationNotFoundException.class)
+    public ResponseEntity<Map<String, String>> handleNotFoundException(Exception e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequestException(Exception e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
+}
@@ -0,0 +1,6 @@
+package org.ithub.catalogservice.dto;
+
+// Сводка по таблице товаров: новый товар увеличивает maxId, удаление меняет count,
+// а любое обновление увеличивает версию товара и вместе с ней versionSum
+public record CatalogFingerprint(long count, long maxId, long versionSum) {
+}
@@ -0,0 +1,7 @@
+package org.ithub.catalogservice.dto;
+
+import java.util.List;
+
+// Страница товаров без подсчета общего количества, чтобы не выполнять count(*) на каждый запрос
+public record ProductPage<T>(List<T> content, int page, int size, boolean hasNext) {
+}
@@ -0,0 +1,7 @@
+package org.ithub.catalogservice.dto;
+
+import java.math.BigDecimal;
+
+// Облегченное представление товара для списков, без описания
+public record ProductSummary(Long id, String name, BigDecimal price, Boolean available) {
+}
@@ -0,0 +1,9 @@
+package org.ithub.catalogservice.dto;
+
+import jakarta.validation.Valid;
+
+import java.util.List;
+
+// Позиции резерва: по ним товары списываются, даже если резерв успел истечь до подтверждения
+public record StockCommitRequest(List<@Valid StockLine> lines) {
+}
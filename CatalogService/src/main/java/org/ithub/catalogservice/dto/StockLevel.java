@@ -0,0 +1,4 @@
+package org.ithub.catalogservice.dto;
+
+public record StockLevel(Long productId, long onHand, long reserved, long available) {
+}
@@ -0,0 +1,7 @@
+package org.ithub.catalogservice.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public record StockLine(@NotNull Long productId, @Min(1) int quantity) {
+}
@@ -0,0 +1,11 @@
+package org.ithub.catalogservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.time.Duration;
+import java.util.List;
+
+// ttl необязателен, по умолчанию используется catalog.stock.reservation-ttl
+public record StockReservationRequest(@NotEmpty List<@Valid StockLine> lines, Duration ttl) {
+}
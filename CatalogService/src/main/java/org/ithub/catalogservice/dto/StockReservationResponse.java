@@ -0,0 +1,7 @@
+package org.ithub.catalogservice.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public record StockReservationResponse(String reservationId, Instant expiresAt, List<StockLine> lines) {
+}
@@ -0,0 +1,11 @@
+package org.ithub.catalogservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+// restockId задает вызывающий сервис, например по заказу; повтор с тем же id ничего не меняет
+public record StockRestockRequest(@NotBlank String restockId, @NotEmpty List<@Valid StockLine> lines) {
+}
@@ -0,0 +1,7 @@
+package org.ithub.catalogservice.exception;
+
+public class InsufficientStockException extends RuntimeException {
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.ithub.catalogservice.exception;
+
+public class ReservationNotFoundException extends RuntimeException {
+    public ReservationNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -1,9 +1,11 @@
 package org.ithub.catalogservice.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 
 import jakarta.persistence.*;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -31,10 +33,24 @@ public class Product {
     @NotNull
     private Boolean available;
 
+    // Количество на складе; резервы учитываются в памяти, списания записываются с задержкой
+    @Min(0)
+    @Column(name = "stock_quantity", nullable = false)
+    private Integer stockQuantity = 0;
+
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
     public Product(String name, String description, BigDecimal price, Boolean available) {
         this.name = name;
         this.description = description;
         this.price = price;
         this.available = available;
     }
+
+    public Product(String name, String description, BigDecimal price, Boolean available, Integer stockQuantity) {
+        this(name, description, price, available);
+        this.stockQuantity = stockQuantity;
+    }
 }
\ No newline at end of file
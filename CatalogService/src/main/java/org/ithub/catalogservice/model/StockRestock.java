@@ -0,0 +1,25 @@
+package org.ithub.catalogservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Примененный возврат товаров на склад; по restockId повторный запрос распознается и пропускается
+@Data
+@Entity
+@Table(name = "stock_restocks")
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockRestock {
+    @Id
+    private String restockId;
+
+    @Column(nullable = false)
+    private Instant appliedAt;
+}
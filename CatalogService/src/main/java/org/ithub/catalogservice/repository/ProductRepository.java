@@ -1,12 +1,53 @@
 package org.ithub.catalogservice.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.ithub.catalogservice.dto.CatalogFingerprint;
+import org.ithub.catalogservice.dto.ProductSummary;
 import org.ithub.catalogservice.model.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByNameContainingIgnoreCase(String name);
+
+    // Выбирает только колонки проекции, без описания
+    Slice<ProductSummary> findSummariesBy(Pageable pageable);
+
+    Slice<Product> findSliceBy(Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAll();
+
+    @Query("select new org.ithub.catalogservice.dto.CatalogFingerprint(count(p), coalesce(max(p.id), 0L), " +
+            "coalesce(sum(p.version), 0L)) from Product p")
+    CatalogFingerprint fingerprint();
+
+    // Списание проданного количества одним UPDATE; версия увеличивается, чтобы сменился ETag товара
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.stockQuantity = p.stockQuantity - :quantity, p.version = p.version + 1 " +
+            "where p.id = :id")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.stockQuantity = p.stockQuantity + :quantity, p.version = p.version + 1 " +
+            "where p.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
 }
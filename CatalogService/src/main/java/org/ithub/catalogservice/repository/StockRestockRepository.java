@@ -0,0 +1,9 @@
+package org.ithub.catalogservice.repository;
+
+import org.ithub.catalogservice.model.StockRestock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockRestockRepository extends JpaRepository<StockRestock, String> {
+}
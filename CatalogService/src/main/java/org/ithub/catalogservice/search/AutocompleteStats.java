@@ -0,0 +1,4 @@
+package org.ithub.catalogservice.search;
+
+public record AutocompleteStats(int products, int nodes, long estimatedBytes, long bytesPerProduct) {
+}
@@ -0,0 +1,396 @@
+package org.ithub.catalogservice.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.catalogservice.model.Product;
+import org.ithub.catalogservice.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Префиксное дерево по названиям товаров для автодополнения.
+// В каждом узле хранится top-k товаров поддерева, поэтому ответ не зависит от размера каталога.
+// Название индексируется с начала каждого слова, чтобы "book" находил "Gaming Notebook"
+@Slf4j
+@Component
+public class ProductAutocompleteIndex {
+    private static final int REBUILD_PAGE_SIZE = 1000;
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final long[] NO_IDS = new long[0];
+
+    private final ProductRepository productRepository;
+    private final int topK;
+    private final int maxKeyLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, AtomicLong> views = new ConcurrentHashMap<>();
+    private final Comparator<Long> ranking = Comparator
+            .comparing((Long id) -> !entries.get(id).available())
+            .thenComparing((Long id) -> -entries.get(id).popularity())
+            .thenComparing((Long id) -> entries.get(id).name(), String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(id -> id);
+    private Node root = new Node();
+    private int nodeCount = 1;
+
+    public ProductAutocompleteIndex(ProductRepository productRepository,
+                                    @Value("${catalog.autocomplete.top-k:10}") int topK,
+                                    @Value("${catalog.autocomplete.max-key-length:24}") int maxKeyLength) {
+        this.productRepository = productRepository;
+        this.topK = topK;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            root = new Node();
+            nodeCount = 1;
+            Page<Product> page = productRepository.findAll(PageRequest.of(0, REBUILD_PAGE_SIZE, Sort.by("id")));
+            while (true) {
+                page.forEach(this::add);
+                if (!page.hasNext()) {
+                    break;
+                }
+                page = productRepository.findAll(page.nextPageable());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Autocomplete index rebuilt: {}", stats());
+    }
+
+    public void index(Product product) {
+        indexAll(List.of(product));
+    }
+
+    public void indexAll(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            for (Product product : products) {
+                remove(product.getId());
+                add(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Long productId) {
+        lock.writeLock().lock();
+        try {
+            remove(productId);
+            views.remove(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Учитывает просмотр товара. Дерево обновляется только когда счетчик достигает степени двойки,
+    // чтобы частые просмотры не блокировали индекс на запись
+    public void recordView(Long productId) {
+        long count = views.computeIfAbsent(productId, id -> new AtomicLong()).incrementAndGet();
+        if (Long.bitCount(count) != 1) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(productId);
+            if (entry == null) {
+                return;
+            }
+            removeKeys(entry);
+            Entry updated = new Entry(entry.id(), entry.name(), entry.available(), count, entry.keys());
+            entries.put(productId, updated);
+            addKeys(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        String key = normalized.length() > maxKeyLength ? normalized.substring(0, maxKeyLength) : normalized;
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            List<ProductSuggestion> suggestions = new ArrayList<>();
+            for (int i = 0; i < node.top.length && suggestions.size() < Math.min(limit, topK); i++) {
+                Entry entry = entries.get(node.top[i]);
+                // Ключи обрезаются до maxKeyLength, поэтому длинный префикс проверяем по полному названию
+                if (normalized.length() <= maxKeyLength || matchesPrefix(entry, normalized)) {
+                    suggestions.add(new ProductSuggestion(entry.id(), entry.name(), entry.available()));
+                }
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Оценка занимаемой памяти (64-битная JVM со сжатыми указателями)
+    public AutocompleteStats stats() {
+        lock.readLock().lock();
+        try {
+            long bytes = estimateSize(root);
+            for (Entry entry : entries.values()) {
+                bytes += 48 + 40 + entry.name().length() * 2L + 16 + 4L * entry.keys().length;
+            }
+            int products = entries.size();
+            return new AutocompleteStats(products, nodeCount, bytes, products == 0 ? 0 : bytes / products);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Product product) {
+        if (product.getName() == null) {
+            return;
+        }
+        Entry entry = new Entry(product.getId(), product.getName(), Boolean.TRUE.equals(product.getAvailable()),
+                popularity(product.getId()), keys(product.getName()));
+        entries.put(entry.id(), entry);
+        addKeys(entry);
+    }
+
+    private void remove(Long productId) {
+        Entry entry = entries.get(productId);
+        if (entry != null) {
+            removeKeys(entry);
+            entries.remove(productId);
+        }
+    }
+
+    // Популярность округляется вниз до степени двойки, как и при обновлении в recordView
+    private long popularity(Long productId) {
+        AtomicLong count = views.get(productId);
+        return count == null || count.get() == 0 ? 0 : Long.highestOneBit(count.get());
+    }
+
+    private void addKeys(Entry entry) {
+        for (String key : entry.keys()) {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.child(key.charAt(i));
+                if (child == null) {
+                    child = node.addChild(key.charAt(i));
+                    nodeCount++;
+                }
+                node = child;
+                path.add(node);
+            }
+            node.terminals = append(node.terminals, entry.id());
+            for (Node pathNode : path) {
+                pathNode.top = offer(pathNode.top, entry.id());
+            }
+        }
+    }
+
+    private void removeKeys(Entry entry) {
+        for (String key : entry.keys()) {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+                path.add(node);
+            }
+            if (node == null) {
+                continue;
+            }
+            node.terminals = without(node.terminals, entry.id());
+
+            // Пересчитываем top-k снизу вверх и удаляем опустевшие узлы
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node pathNode = path.get(i);
+                if (i > 0 && pathNode.terminals.length == 0 && pathNode.children.length == 0) {
+                    path.get(i - 1).removeChild(key.charAt(i - 1));
+                    nodeCount--;
+                } else if (contains(pathNode.top, entry.id())) {
+                    pathNode.top = recompute(pathNode, entry.id());
+                }
+            }
+        }
+    }
+
+    private long[] recompute(Node node, long excludedId) {
+        Set<Long> candidates = new LinkedHashSet<>();
+        for (long id : node.terminals) {
+            candidates.add(id);
+        }
+        for (Node child : node.children) {
+            for (long id : child.top) {
+                candidates.add(id);
+            }
+        }
+        candidates.remove(excludedId);
+        return candidates.stream()
+                .sorted(ranking)
+                .limit(topK)
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+
+    private long[] offer(long[] top, long id) {
+        if (contains(top, id)) {
+            return top;
+        }
+        int position = 0;
+        while (position < top.length && ranking.compare(top[position], id) < 0) {
+            position++;
+        }
+        if (position >= topK) {
+            return top;
+        }
+        int length = Math.min(top.length + 1, topK);
+        long[] result = new long[length];
+        System.arraycopy(top, 0, result, 0, position);
+        result[position] = id;
+        System.arraycopy(top, position, result, position + 1, length - position - 1);
+        return result;
+    }
+
+    private String[] keys(String name) {
+        String normalized = normalize(name);
+        Set<String> keys = new LinkedHashSet<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (i == 0 || normalized.charAt(i - 1) == ' ') {
+                String key = normalized.substring(i);
+                keys.add(key.length() > maxKeyLength ? key.substring(0, maxKeyLength) : key);
+            }
+        }
+        return keys.toArray(String[]::new);
+    }
+
+    private boolean matchesPrefix(Entry entry, String prefix) {
+        String name = normalize(entry.name());
+        return name.startsWith(prefix) || name.contains(" " + prefix);
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+
+    private long estimateSize(Node node) {
+        long bytes = 24
+                + 16 + 2L * node.labels.length
+                + 16 + 4L * node.children.length
+                + (node.terminals.length == 0 ? 0 : 16 + 8L * node.terminals.length)
+                + (node.top.length == 0 ? 0 : 16 + 8L * node.top.length);
+        for (Node child : node.children) {
+            bytes += estimateSize(child);
+        }
+        return bytes;
+    }
+
+    private static boolean contains(long[] ids, long id) {
+        for (long value : ids) {
+            if (value == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] append(long[] ids, long id) {
+        if (contains(ids, id)) {
+            return ids;
+        }
+        long[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static long[] without(long[] ids, long id) {
+        if (!contains(ids, id)) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return NO_IDS;
+        }
+        return Arrays.stream(ids).filter(value -> value != id).toArray();
+    }
+
+    private record Entry(Long id, String name, boolean available, long popularity, String[] keys) {
+    }
+
+    // Узел дерева: дочерние узлы хранятся в отсортированных массивах вместо HashMap
+    private static class Node {
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private long[] terminals = NO_IDS;
+        private long[] top = NO_IDS;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node addChild(char label) {
+            int index = -(Arrays.binarySearch(labels, label) + 1);
+            Node child = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newLabels[index] = label;
+            newChildren[index] = child;
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+    }
+}
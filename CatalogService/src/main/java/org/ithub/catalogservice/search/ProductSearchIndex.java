@@ -0,0 +1,348 @@
+package org.ithub.catalogservice.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.catalogservice.model.Product;
+import org.ithub.catalogservice.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// Инвертированный индекс по названию и описанию товаров.
+// Слова индексируются целиком и триграммами (для поиска по подстроке); списки товаров хранятся
+// отсортированными массивами id и пересекаются слиянием.
+// В индексе хранятся только id и название товара, сами товары перечитываются из базы по найденным id
+@Slf4j
+@Component
+public class ProductSearchIndex {
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int GRAM_SIZE = 3;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private static final int NAME_EXACT = 10;
+    private static final int NAME_PREFIX = 6;
+    private static final int NAME_SUBSTRING = 4;
+    private static final int DESCRIPTION_EXACT = 3;
+    private static final int DESCRIPTION_PREFIX = 2;
+    private static final int DESCRIPTION_SUBSTRING = 1;
+
+    private final ProductRepository productRepository;
+    private final int maxResults;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final Map<String, Posting> tokens = new HashMap<>();
+    private final Map<String, Posting> grams = new HashMap<>();
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${catalog.search.max-results:100}") int maxResults) {
+        this.productRepository = productRepository;
+        this.maxResults = maxResults;
+    }
+
+    // Полная перестройка индекса при старте, товары читаются из базы постранично
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            tokens.clear();
+            grams.clear();
+            Page<Product> page = productRepository.findAll(PageRequest.of(0, REBUILD_PAGE_SIZE, Sort.by("id")));
+            while (true) {
+                page.forEach(this::addDocument);
+                if (!page.hasNext()) {
+                    break;
+                }
+                page = productRepository.findAll(page.nextPageable());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Search index rebuilt with {} products in {} ms", documents.size(), System.currentTimeMillis() - start);
+    }
+
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(product.getId());
+            addDocument(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexAll(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            for (Product product : products) {
+                removeDocument(product.getId());
+                addDocument(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Все слова запроса должны встретиться в названии или описании; результат отсортирован по релевантности
+    public List<Product> search(String query) {
+        List<Long> ids = searchIds(query);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // Остаток и версия меняются без переиндексации, поэтому берем актуальные строки, сохраняя порядок
+        Map<Long, Product> products = new HashMap<>();
+        productRepository.findAllById(ids).forEach(product -> products.put(product.getId(), product));
+        return ids.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private List<Long> searchIds(String query) {
+        String[] queryTokens = tokenize(query);
+        if (queryTokens.length == 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            long[] candidates = null;
+            for (String token : candidateTokens(queryTokens)) {
+                long[] matches = candidates(token);
+                candidates = candidates == null ? matches : intersect(candidates, matches, matches.length);
+                if (candidates.length == 0) {
+                    return List.of();
+                }
+            }
+
+            List<ScoredDocument> scored = new ArrayList<>();
+            for (long id : candidates) {
+                Document document = documents.get(id);
+                int score = 0;
+                for (String token : queryTokens) {
+                    int tokenScore = score(document, token);
+                    if (tokenScore == 0) {
+                        score = 0;
+                        break;
+                    }
+                    score += tokenScore;
+                }
+                if (score > 0) {
+                    scored.add(new ScoredDocument(document, score));
+                }
+            }
+
+            return scored.stream()
+                    .sorted(Comparator.comparingInt(ScoredDocument::score).reversed()
+                            .thenComparing(scoredDocument -> scoredDocument.document().name(),
+                                    Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)))
+                    .limit(maxResults)
+                    .map(scoredDocument -> scoredDocument.document().id())
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Короткие слова совпадают с префиксами слишком многих слов, поэтому кандидатов дают только слова
+    // из трех и более символов, а короткие проверяются при подсчете релевантности.
+    // Запрос только из коротких слов ищет их как целые слова
+    private List<String> candidateTokens(String[] queryTokens) {
+        List<String> longTokens = Arrays.stream(queryTokens)
+                .filter(token -> token.length() >= GRAM_SIZE)
+                .toList();
+        return longTokens.isEmpty() ? Arrays.asList(queryTokens) : longTokens;
+    }
+
+    // Кандидаты для одного слова запроса: по триграммам для длинных слов, по точному совпадению для коротких
+    private long[] candidates(String token) {
+        if (token.length() < GRAM_SIZE) {
+            Posting posting = tokens.get(token);
+            return posting == null ? new long[0] : posting.toArray();
+        }
+
+        List<Posting> postings = new ArrayList<>();
+        for (String gram : grams(token)) {
+            Posting posting = grams.get(gram);
+            if (posting == null) {
+                return new long[0];
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Posting::size));
+        long[] result = postings.get(0).toArray();
+        for (int i = 1; i < postings.size() && result.length > 0; i++) {
+            result = intersect(result, postings.get(i).ids, postings.get(i).size);
+        }
+        return result;
+    }
+
+    // Пересечение отсортированных массивов слиянием; second учитывается только в пределах secondSize
+    private static long[] intersect(long[] first, long[] second, int secondSize) {
+        long[] result = new long[Math.min(first.length, secondSize)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < secondSize) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private int score(Document document, String token) {
+        return score(document.nameTokens(), token, NAME_EXACT, NAME_PREFIX, NAME_SUBSTRING)
+                + score(document.descriptionTokens(), token, DESCRIPTION_EXACT, DESCRIPTION_PREFIX, DESCRIPTION_SUBSTRING);
+    }
+
+    private int score(String[] documentTokens, String token, int exact, int prefix, int substring) {
+        int best = 0;
+        for (String documentToken : documentTokens) {
+            if (documentToken.equals(token)) {
+                return exact;
+            } else if (documentToken.startsWith(token)) {
+                best = Math.max(best, prefix);
+            } else if (documentToken.contains(token)) {
+                best = Math.max(best, substring);
+            }
+        }
+        return best;
+    }
+
+    private void addDocument(Product product) {
+        Document document = new Document(product.getId(), product.getName(),
+                tokenize(product.getName()), tokenize(product.getDescription()));
+        documents.put(product.getId(), document);
+        for (String token : document.allTokens()) {
+            tokens.computeIfAbsent(token, key -> new Posting()).add(product.getId());
+            for (String gram : grams(token)) {
+                grams.computeIfAbsent(gram, key -> new Posting()).add(product.getId());
+            }
+        }
+    }
+
+    private void removeDocument(Long productId) {
+        Document document = documents.remove(productId);
+        if (document == null) {
+            return;
+        }
+        for (String token : document.allTokens()) {
+            removePosting(tokens, token, productId);
+            for (String gram : grams(token)) {
+                removePosting(grams, gram, productId);
+            }
+        }
+    }
+
+    private void removePosting(Map<String, Posting> postings, String key, Long productId) {
+        Posting posting = postings.get(key);
+        if (posting != null && posting.remove(productId) && posting.size() == 0) {
+            postings.remove(key);
+        }
+    }
+
+    private static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        return Arrays.stream(TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private static Set<String> grams(String token) {
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= token.length(); i++) {
+            result.add(token.substring(i, i + GRAM_SIZE));
+        }
+        return result;
+    }
+
+    private record Document(Long id, String name, String[] nameTokens, String[] descriptionTokens) {
+
+        Set<String> allTokens() {
+            Set<String> result = new HashSet<>(Arrays.asList(nameTokens));
+            result.addAll(Arrays.asList(descriptionTokens));
+            return result;
+        }
+    }
+
+    private record ScoredDocument(Document document, int score) {
+    }
+
+    // Отсортированный по возрастанию массив id товаров без упаковки в Long. При перестройке индекса
+    // товары добавляются по возрастанию id, поэтому вставка сводится к записи в конец массива
+    private static final class Posting {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package org.ithub.catalogservice.search;
+
+public record ProductSuggestion(Long id, String name, boolean available) {
+}
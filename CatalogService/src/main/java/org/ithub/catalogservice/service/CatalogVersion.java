@@ -0,0 +1,43 @@
+package org.ithub.catalogservice.service;
+
+import org.ithub.catalogservice.dto.CatalogFingerprint;
+import org.ithub.catalogservice.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Версия всего каталога для ETag списка товаров. Вычисляется по данным в базе, поэтому совпадает
+// у всех экземпляров и переживает рестарт. Значение кешируется на refresh-interval и сбрасывается
+// при локальных изменениях; изменения через другой экземпляр видны не позже чем через refresh-interval
+@Component
+public class CatalogVersion {
+    private final ProductRepository productRepository;
+    private final long refreshIntervalNanos;
+    private volatile Cached cached;
+
+    public CatalogVersion(ProductRepository productRepository,
+                          @Value("${catalog.version.refresh-interval:1s}") Duration refreshInterval) {
+        this.productRepository = productRepository;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+    }
+
+    public String get() {
+        Cached current = cached;
+        long now = System.nanoTime();
+        if (current != null && now - current.computedAt() < refreshIntervalNanos) {
+            return current.version();
+        }
+        CatalogFingerprint fingerprint = productRepository.fingerprint();
+        String version = fingerprint.count() + "-" + fingerprint.maxId() + "-" + fingerprint.versionSum();
+        cached = new Cached(version, now);
+        return version;
+    }
+
+    public void invalidate() {
+        cached = null;
+    }
+
+    private record Cached(String version, long computedAt) {
+    }
+}
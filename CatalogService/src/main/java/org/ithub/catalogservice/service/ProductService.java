@@ -1,27 +1,127 @@
 package org.ithub.catalogservice.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.catalogservice.dto.ProductPage;
+import org.ithub.catalogservice.dto.ProductSummary;
 import org.ithub.catalogservice.model.Product;
 import org.ithub.catalogservice.repository.ProductRepository;
+import org.ithub.catalogservice.search.AutocompleteStats;
+import org.ithub.catalogservice.search.ProductAutocompleteIndex;
+import org.ithub.catalogservice.search.ProductSearchIndex;
+import org.ithub.catalogservice.search.ProductSuggestion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 public class ProductService {
+    private static final int EXPORT_CLEAR_INTERVAL = 500;
+    private static final Set<String> SUMMARY_FIELDS = Set.of("id", "name", "price", "available");
+    private static final Map<String, Function<Product, Object>> FIELDS = Map.of(
+            "id", Product::getId,
+            "name", Product::getName,
+            "description", Product::getDescription,
+            "price", Product::getPrice,
+            "available", Product::getAvailable,
+            "stockQuantity", Product::getStockQuantity,
+            "version", Product::getVersion);
+
     private final ProductRepository productRepository;
+    private final ProductSearchIndex searchIndex;
+    private final ProductAutocompleteIndex autocompleteIndex;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final CatalogVersion catalogVersion;
+    private final StockReservationService stockReservationService;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository,
+                          ProductSearchIndex searchIndex,
+                          ProductAutocompleteIndex autocompleteIndex,
+                          EntityManager entityManager,
+                          ObjectMapper objectMapper,
+                          CatalogVersion catalogVersion,
+                          StockReservationService stockReservationService) {
         this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.autocompleteIndex = autocompleteIndex;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
+        this.stockReservationService = stockReservationService;
+    }
+
+    public String getCatalogVersion() {
+        return catalogVersion.get();
     }
 
     public long count() {
         return productRepository.count();
     }
 
-    public List<Product> findAll() {
-        return productRepository.findAll();
+    // Страница товаров в виде облегченной проекции (id, name, price, available)
+    public ProductPage<ProductSummary> findPage(Pageable pageable) {
+        Slice<ProductSummary> slice = productRepository.findSummariesBy(pageable);
+        return new ProductPage<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext());
+    }
+
+    // Страница товаров только с запрошенными полями. Полная сущность загружается,
+    // только если запрошены поля, которых нет в проекции
+    public ProductPage<Map<String, Object>> findPage(Pageable pageable, Set<String> fields) {
+        for (String field : fields) {
+            if (!FIELDS.containsKey(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field + ", allowed: " + FIELDS.keySet());
+            }
+        }
+
+        List<Map<String, Object>> content;
+        Slice<?> slice;
+        if (SUMMARY_FIELDS.containsAll(fields)) {
+            Slice<ProductSummary> summaries = productRepository.findSummariesBy(pageable);
+            content = summaries.map(summary -> selectFields(toProduct(summary), fields)).getContent();
+            slice = summaries;
+        } else {
+            Slice<Product> products = productRepository.findSliceBy(pageable);
+            content = products.map(product -> selectFields(product, fields)).getContent();
+            slice = products;
+        }
+        return new ProductPage<>(content, slice.getNumber(), slice.getSize(), slice.hasNext());
+    }
+
+    // Потоково пишет все товары JSON-массивом, не загружая таблицу целиком в память
+    @Transactional(readOnly = true)
+    public void exportAll(OutputStream out) throws IOException {
+        log.warn("exporting all products");
+        try (Stream<Product> products = productRepository.streamAll();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            Iterator<Product> iterator = products.iterator();
+            int written = 0;
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+                if (++written % EXPORT_CLEAR_INTERVAL == 0) {
+                    // Отпускаем уже записанные сущности, чтобы контекст персистентности не рос
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+            generator.writeEndArray();
+        }
     }
 
     public Product findById(long id) {
@@ -30,6 +130,11 @@ public class ProductService {
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
     }
 
+    // Просмотр карточки пользователем поднимает товар в подсказках автодополнения
+    public void recordView(long id) {
+        autocompleteIndex.recordView(id);
+    }
+
     public Product updateById(long id, Product newProduct) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
@@ -38,28 +143,74 @@ public class ProductService {
         product.setPrice(newProduct.getPrice());
         product.setAvailable(newProduct.getAvailable());
         product.setDescription(newProduct.getDescription() == null ? "" : newProduct.getDescription());
+        if (newProduct.getStockQuantity() != null) {
+            product.setStockQuantity(newProduct.getStockQuantity());
+        }
         log.warn("Updated product: {}", product);
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        searchIndex.index(saved);
+        autocompleteIndex.index(saved);
+        stockReservationService.productUpdated(saved, newProduct.getStockQuantity() != null);
+        catalogVersion.invalidate();
+        return saved;
     }
 
     public void deleteById(long id) {
         log.warn("deleted product by id: {}", id);
         productRepository.deleteById(id);
+        searchIndex.remove(id);
+        autocompleteIndex.delete(id);
+        stockReservationService.evict(id);
+        catalogVersion.invalidate();
     }
 
     public Product save(Product product) {
         log.warn("created product: {}", product);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        searchIndex.index(saved);
+        autocompleteIndex.index(saved);
+        catalogVersion.invalidate();
+        return saved;
+    }
+
+    public List<Product> findAllByIds(List<Long> ids) {
+        log.warn("finding products by ids: {}", ids);
+        return productRepository.findAllById(ids);
     }
 
     public List<Product> search(String keyword) {
         log.warn("finding products by keyword: {}", keyword);
-        return productRepository.findByNameContainingIgnoreCase(keyword);
+        return searchIndex.search(keyword);
+    }
+
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        return autocompleteIndex.suggest(prefix, limit);
+    }
+
+    public AutocompleteStats autocompleteStats() {
+        return autocompleteIndex.stats();
+    }
+
+    private Product toProduct(ProductSummary summary) {
+        Product product = new Product(summary.name(), null, summary.price(), summary.available());
+        product.setId(summary.id());
+        return product;
+    }
+
+    private Map<String, Object> selectFields(Product product, Set<String> fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String field : fields) {
+            result.put(field, FIELDS.get(field).apply(product));
+        }
+        return result;
     }
 
     public void saveAll(List<Product> productList){
         log.warn("created products: {}", productList);
-        productRepository.saveAll(productList);
+        List<Product> saved = productRepository.saveAll(productList);
+        searchIndex.indexAll(saved);
+        autocompleteIndex.indexAll(saved);
+        catalogVersion.invalidate();
     }
 }
@@ -0,0 +1,336 @@
+package org.ithub.catalogservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.catalogservice.dto.StockCommitRequest;
+import org.ithub.catalogservice.dto.StockLevel;
+import org.ithub.catalogservice.dto.StockLine;
+import org.ithub.catalogservice.dto.StockReservationRequest;
+import org.ithub.catalogservice.dto.StockReservationResponse;
+import org.ithub.catalogservice.dto.StockRestockRequest;
+import org.ithub.catalogservice.exception.InsufficientStockException;
+import org.ithub.catalogservice.exception.ReservationNotFoundException;
+import org.ithub.catalogservice.model.Product;
+import org.ithub.catalogservice.model.StockRestock;
+import org.ithub.catalogservice.repository.ProductRepository;
+import org.ithub.catalogservice.repository.StockRestockRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Резервирование товаров на складе без блокировок строк в Postgres.
+// Остатки и резервы хранятся в атомарных счетчиках в памяти, списания записываются в базу пачками.
+// Счетчики и резервы принадлежат одному экземпляру CatalogService: несколько реплик резервировали бы
+// каждая свою копию остатков, поэтому /api/stock должен обслуживать ровно один экземпляр
+@Slf4j
+@Service
+public class StockReservationService {
+    private final ProductRepository productRepository;
+    private final StockRestockRepository restockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogVersion catalogVersion;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final Duration commitRetention;
+    private final Map<Long, StockCounter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    // Подтвержденные резервы: повторное подтверждение того же id ничего не меняет
+    private final Map<String, Instant> committed = new ConcurrentHashMap<>();
+    // Проданное, но еще не записанное в базу количество по товарам
+    private final Map<Long, LongAdder> pendingDecrements = new ConcurrentHashMap<>();
+    // Загрузка счетчиков из базы (read) и возврат на склад (write) не пересекаются: иначе счетчик,
+    // загруженный после фиксации возврата, получил бы то же количество еще раз
+    private final ReadWriteLock counterLoadLock = new ReentrantReadWriteLock();
+
+    public StockReservationService(ProductRepository productRepository,
+                                   StockRestockRepository restockRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   CatalogVersion catalogVersion,
+                                   @Value("${catalog.stock.reservation-ttl:15m}") Duration defaultTtl,
+                                   @Value("${catalog.stock.max-reservation-ttl:1h}") Duration maxTtl,
+                                   @Value("${catalog.stock.commit-retention:24h}") Duration commitRetention) {
+        this.productRepository = productRepository;
+        this.restockRepository = restockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.catalogVersion = catalogVersion;
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.commitRetention = commitRetention;
+    }
+
+    // Резервирует все позиции или ни одной. Позиции обрабатываются в порядке productId;
+    // все счетчики загружаются до первого резерва, поэтому неизвестный товар ничего не оставляет занятым
+    public StockReservationResponse reserve(StockReservationRequest request) {
+        Map<Long, Integer> quantities = mergeLines(request.lines());
+        Map<Long, StockCounter> lineCounters = new LinkedHashMap<>();
+        quantities.keySet().forEach(productId -> lineCounters.put(productId, counter(productId)));
+
+        List<StockLine> reserved = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            StockCounter counter = lineCounters.get(line.getKey());
+            if (!counter.tryReserve(line.getValue())) {
+                reserved.forEach(done -> lineCounters.get(done.productId()).release(done.quantity()));
+                log.warn("Insufficient stock for product {}: requested {}, available {}",
+                        line.getKey(), line.getValue(), counter.available());
+                throw new InsufficientStockException("Insufficient stock for product " + line.getKey());
+            }
+            reserved.add(new StockLine(line.getKey(), line.getValue()));
+        }
+
+        Duration ttl = request.ttl() == null ? defaultTtl : request.ttl();
+        if (ttl.compareTo(maxTtl) > 0) {
+            ttl = maxTtl;
+        }
+        Reservation reservation = new Reservation(UUID.randomUUID().toString(), reserved, Instant.now().plus(ttl));
+        reservations.put(reservation.id(), reservation);
+        log.info("Reserved stock {} as {}", reserved, reservation.id());
+        return new StockReservationResponse(reservation.id(), reservation.expiresAt(), reserved);
+    }
+
+    // Превращает резерв в списание. Запись в базу выполняется фоновым flush.
+    // Повтор с тем же reservationId считается уже выполненным. Если резерв успел истечь, товары
+    // списываются по позициям из запроса: заказ уже оформлен, и вернуть их в продажу нельзя
+    public void commit(String reservationId, StockCommitRequest request) {
+        if (committed.putIfAbsent(reservationId, Instant.now()) != null) {
+            log.info("Stock reservation {} was already committed", reservationId);
+            return;
+        }
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation != null) {
+            for (StockLine line : reservation.lines()) {
+                counter(line.productId()).commit(line.quantity());
+                pendingDecrements.computeIfAbsent(line.productId(), id -> new LongAdder()).add(line.quantity());
+            }
+            log.info("Committed stock reservation {}", reservationId);
+            return;
+        }
+
+        if (request == null || request.lines() == null || request.lines().isEmpty()) {
+            committed.remove(reservationId);
+            throw new ReservationNotFoundException("Reservation not found or expired: " + reservationId);
+        }
+        Map<Long, Integer> quantities = mergeLines(request.lines());
+        quantities.forEach((productId, quantity) -> {
+            counter(productId).onHand.addAndGet(-quantity);
+            pendingDecrements.computeIfAbsent(productId, id -> new LongAdder()).add(quantity);
+        });
+        log.warn("Stock reservation {} expired before commit, deducted {} directly", reservationId, quantities);
+    }
+
+    // Отменяет резерв; повторный вызов для уже снятого резерва ничего не делает
+    public void release(String reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation != null) {
+            releaseLines(reservation);
+            log.info("Released stock reservation {}", reservationId);
+        }
+    }
+
+    // Возвращает на склад товары отмененного или возвращенного заказа. Остаток увеличивается в базе
+    // в одной транзакции с записью restockId, поэтому повторный запрос не увеличит его дважды
+    public void restock(StockRestockRequest request) {
+        Map<Long, Integer> quantities = mergeLines(request.lines());
+        counterLoadLock.writeLock().lock();
+        try {
+            boolean applied;
+            try {
+                applied = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    if (restockRepository.existsById(request.restockId())) {
+                        return false;
+                    }
+                    restockRepository.save(new StockRestock(request.restockId(), Instant.now()));
+                    quantities.forEach((productId, quantity) -> {
+                        if (productRepository.incrementStock(productId, quantity) == 0) {
+                            log.warn("Skipping restock of {} for missing product {}", quantity, productId);
+                        }
+                    });
+                    return true;
+                }));
+            } catch (DataIntegrityViolationException e) {
+                // Параллельный запрос с тем же restockId успел зафиксироваться первым
+                applied = false;
+            }
+            if (!applied) {
+                log.info("Restock {} was already applied", request.restockId());
+                return;
+            }
+
+            // Уже загруженные счетчики увеличиваем сами, незагруженные прочитают новый остаток из базы
+            quantities.forEach((productId, quantity) -> {
+                StockCounter counter = counters.get(productId);
+                if (counter != null) {
+                    counter.onHand.addAndGet(quantity);
+                }
+            });
+        } finally {
+            counterLoadLock.writeLock().unlock();
+        }
+        catalogVersion.invalidate();
+        log.info("Restocked {} as {}", quantities, request.restockId());
+    }
+
+    public StockLevel getStockLevel(Long productId) {
+        StockCounter counter = counter(productId);
+        long onHand = counter.onHand.get();
+        long reserved = counter.reserved.get();
+        return new StockLevel(productId, onHand, reserved, Math.max(0, counter.available()));
+    }
+
+    // Применяет ручное изменение товара. Новое количество задается абсолютно,
+    // поэтому еще не записанные списания уже учтены администратором и отбрасываются
+    public void productUpdated(Product product, boolean stockChanged) {
+        if (stockChanged) {
+            pendingDecrements.remove(product.getId());
+        }
+        StockCounter counter = counters.get(product.getId());
+        if (counter != null) {
+            counter.available = Boolean.TRUE.equals(product.getAvailable());
+            if (stockChanged) {
+                counter.onHand.set(product.getStockQuantity());
+            }
+        }
+    }
+
+    public void evict(Long productId) {
+        counters.remove(productId);
+        pendingDecrements.remove(productId);
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.stock.expiry-interval:1000}")
+    public void releaseExpired() {
+        Instant now = Instant.now();
+        for (Reservation reservation : reservations.values()) {
+            if (reservation.expiresAt().isBefore(now) && reservations.remove(reservation.id(), reservation)) {
+                releaseLines(reservation);
+                log.info("Stock reservation {} expired", reservation.id());
+            }
+        }
+        Instant committedBefore = now.minus(commitRetention);
+        committed.values().removeIf(committedAt -> committedAt.isBefore(committedBefore));
+    }
+
+    // Write-behind: накопленные списания записываются одним UPDATE на товар,
+    // поэтому горячий товар дает одну запись за интервал, а не одну на заказ
+    @Scheduled(fixedDelayString = "${catalog.stock.flush-interval:500}")
+    public void flush() {
+        boolean changed = false;
+        for (Map.Entry<Long, LongAdder> entry : pendingDecrements.entrySet()) {
+            int quantity = (int) entry.getValue().sumThenReset();
+            if (quantity == 0) {
+                continue;
+            }
+            try {
+                productRepository.decrementStock(entry.getKey(), quantity);
+                changed = true;
+            } catch (Exception e) {
+                log.error("Failed to persist stock decrement {} for product {}: {}",
+                        quantity, entry.getKey(), e.getMessage());
+                entry.getValue().add(quantity);
+            }
+        }
+        if (changed) {
+            catalogVersion.invalidate();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void releaseLines(Reservation reservation) {
+        for (StockLine line : reservation.lines()) {
+            StockCounter counter = counters.get(line.productId());
+            if (counter != null) {
+                counter.release(line.quantity());
+            }
+        }
+    }
+
+    private Map<Long, Integer> mergeLines(List<StockLine> lines) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        lines.stream()
+                .sorted(Comparator.comparing(StockLine::productId))
+                .forEach(line -> quantities.merge(line.productId(), line.quantity(), Integer::sum));
+        return quantities;
+    }
+
+    // Счетчик загружается из базы при первом обращении к товару
+    private StockCounter counter(Long productId) {
+        StockCounter counter = counters.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        counterLoadLock.readLock().lock();
+        try {
+            return counters.computeIfAbsent(productId, id -> {
+                Product product = productRepository.findById(id)
+                        .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + id));
+                return new StockCounter(product.getStockQuantity(), Boolean.TRUE.equals(product.getAvailable()));
+            });
+        } finally {
+            counterLoadLock.readLock().unlock();
+        }
+    }
+
+    private record Reservation(String id, List<StockLine> lines, Instant expiresAt) {
+    }
+
+    // Доступно = onHand - reserved. Резерв выполняется CAS-циклом без блокировок
+    private static class StockCounter {
+        private final AtomicLong onHand;
+        private final AtomicLong reserved = new AtomicLong();
+        private volatile boolean available;
+
+        StockCounter(long onHand, boolean available) {
+            this.onHand = new AtomicLong(onHand);
+            this.available = available;
+        }
+
+        boolean tryReserve(int quantity) {
+            if (!available) {
+                return false;
+            }
+            while (true) {
+                long current = reserved.get();
+                if (onHand.get() - current < quantity) {
+                    return false;
+                }
+                if (reserved.compareAndSet(current, current + quantity)) {
+                    return true;
+                }
+            }
+        }
+
+        // Сначала уменьшаем остаток, потом резерв: в промежутке доступное количество
+        // кажется меньше реального, но никогда не больше
+        void commit(int quantity) {
+            onHand.addAndGet(-quantity);
+            reserved.addAndGet(-quantity);
+        }
+
+        void release(int quantity) {
+            reserved.addAndGet(-quantity);
+        }
+
+        long available() {
+            return available ? onHand.get() - reserved.get() : 0;
+        }
+    }
+}
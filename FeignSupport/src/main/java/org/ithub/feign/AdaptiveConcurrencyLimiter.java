@@ -0,0 +1,78 @@
+package org.ithub.feign;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Адаптивный ограничитель числа одновременных запросов к одному сервису (AIMD).
+// Пока ответы быстрые и успешные, лимит растет на единицу за каждое "окно" запросов,
+// при медленном ответе или ошибке лимит умножается на backoffRatio
+public class AdaptiveConcurrencyLimiter {
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+    private double limit;
+
+    public AdaptiveConcurrencyLimiter(String name, ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.minLimit = properties.getMinLimit();
+        this.maxLimit = properties.getMaxLimit();
+        this.backoffRatio = properties.getBackoffRatio();
+        this.latencyThresholdNanos = properties.latencyThresholdFor(name).toNanos();
+        this.limit = properties.getInitialLimit();
+
+        Gauge.builder("feign.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("client", name)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("feign.concurrency.inflight", inFlight, AtomicInteger::get)
+                .tag("client", name)
+                .description("Requests currently in flight")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("feign.concurrency.rejected")
+                .tag("client", name)
+                .description("Requests rejected because the concurrency limit was reached")
+                .register(meterRegistry);
+    }
+
+    // Пытается занять слот; при достижении лимита запрос сразу отклоняется
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Освобождает слот и корректирует лимит по результату запроса
+    public void release(long latencyNanos, boolean success) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (!success || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (current * 2 >= limit) {
+                // Увеличиваем лимит только если он реально используется
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,16 @@
+package org.ithub.feign;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+
+// Просит внутренние сервисы отвечать в CBOR; JSON остается запасным вариантом
+public class CborAcceptInterceptor implements RequestInterceptor {
+    private static final String ACCEPT = "application/cbor, application/json;q=0.9";
+
+    @Override
+    public void apply(RequestTemplate template) {
+        if (!template.headers().containsKey("Accept")) {
+            template.header("Accept", ACCEPT);
+        }
+    }
+}
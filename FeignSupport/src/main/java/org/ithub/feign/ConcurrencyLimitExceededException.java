@@ -0,0 +1,10 @@
+package org.ithub.feign;
+
+// Запрос отклонен локальным ограничителем параллельности, до сервиса он не дошел.
+// Непроверяемое исключение Feign пробрасывает без обертки в RetryableException, поэтому
+// Circuit Breaker может его игнорировать (ignore-exceptions), а fallback все равно вызывается
+public class ConcurrencyLimitExceededException extends RuntimeException {
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package org.ithub.feign;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "feign.concurrency-limit")
+public class ConcurrencyLimitProperties {
+    private boolean enabled = true;
+    private int initialLimit = 20;
+    private int minLimit = 2;
+    private int maxLimit = 200;
+    private double backoffRatio = 0.9;
+    private Duration latencyThreshold = Duration.ofSeconds(1);
+    // Порог для отдельных клиентов по имени Feign-клиента: нормальное время ответа сервисов сильно различается
+    private Map<String, Duration> latencyThresholds = new HashMap<>();
+
+    public Duration latencyThresholdFor(String client) {
+        return latencyThresholds.getOrDefault(client, latencyThreshold);
+    }
+}
@@ -0,0 +1,56 @@
+package org.ithub.feign;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Обертка над HTTP-клиентом Feign, ограничивающая число одновременных запросов к каждому сервису.
+// Отклоненный запрос завершается ConcurrencyLimitExceededException: он попадает в fallback-методы,
+// но не считается ошибкой Circuit Breaker, иначе перегрузка у нас открывала бы breaker удаленного сервиса
+@Slf4j
+public class ConcurrencyLimitingClient implements Client {
+    private final Client delegate;
+    private final ConcurrencyLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimitingClient(Client delegate, ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        AdaptiveConcurrencyLimiter limiter = limiters.computeIfAbsent(targetName(request),
+                name -> new AdaptiveConcurrencyLimiter(name, properties, meterRegistry));
+        if (!limiter.tryAcquire()) {
+            log.warn("Concurrency limit {} reached for {}, rejecting {}", limiter.getLimit(), limiter.getName(), request.url());
+            throw new ConcurrencyLimitExceededException("Concurrency limit reached for " + limiter.getName());
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Response response = delegate.execute(request, options);
+            // 4xx - ошибка запроса, а не перегрузка сервиса
+            success = response.status() < 500;
+            return response;
+        } finally {
+            limiter.release(System.nanoTime() - start, success);
+        }
+    }
+
+    private String targetName(Request request) {
+        if (request.requestTemplate() != null && request.requestTemplate().feignTarget() != null) {
+            return request.requestTemplate().feignTarget().name();
+        }
+        return "default";
+    }
+}
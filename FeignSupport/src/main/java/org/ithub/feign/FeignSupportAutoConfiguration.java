@@ -0,0 +1,97 @@
+package org.ithub.feign;
+
+import feign.Client;
+import feign.RequestInterceptor;
+import feign.hc5.ApacheHttp5Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.net.URI;
+
+// Общий транспорт Feign-клиентов для сервисов, зависящих от модуля. Регистрируется до автоконфигурации
+// OpenFeign, чтобы ее условные бины HTTP-клиента видели собственный пул и не создавали второй
+@AutoConfiguration(before = FeignAutoConfiguration.class)
+@EnableConfigurationProperties({ConcurrencyLimitProperties.class, HedgingProperties.class, HttpPoolProperties.class})
+public class FeignSupportAutoConfiguration {
+
+    // Общий пул keep-alive соединений для всех Feign-клиентов с отдельным лимитом на каждый сервис
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager feignConnectionManager(HttpPoolProperties properties) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxTotal())
+                .setMaxConnPerRoute(properties.getDefaultMaxPerTarget())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                        .setTimeToLive(TimeValue.of(properties.getTimeToLive()))
+                        .setValidateAfterInactivity(TimeValue.of(properties.getValidateAfterInactivity()))
+                        .build())
+                .build();
+        properties.getTargets().values().forEach(target -> connectionManager.setMaxPerRoute(
+                new HttpRoute(HttpHost.create(URI.create(target.getUrl()))), target.getMaxConnections()));
+        return connectionManager;
+    }
+
+    // HTTP-клиент с фоновым закрытием простаивающих и просроченных соединений
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient feignHttpClient(PoolingHttpClientConnectionManager feignConnectionManager,
+                                               HttpPoolProperties properties) {
+        return HttpClients.custom()
+                .setConnectionManager(feignConnectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getIdleTimeout()))
+                .disableCookieManagement()
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    // Метрики использования пула: занятые, свободные и ожидающие соединения
+    @Bean
+    public MeterBinder feignConnectionPoolMetrics(PoolingHttpClientConnectionManager feignConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(feignConnectionManager, "feign");
+    }
+
+    // HTTP-клиент для всех Feign-клиентов. Регистрируется всегда: автоконфигурация hc5 отключается из-за
+    // собственного CloseableHttpClient, и без этого бина Feign перешел бы на Client.Default без пула.
+    // Адаптивное ограничение параллельных запросов добавляется, только если оно включено
+    @Bean
+    public Client feignClient(CloseableHttpClient feignHttpClient, ConcurrencyLimitProperties properties,
+                              MeterRegistry meterRegistry) {
+        Client client = new ApacheHttp5Client(feignHttpClient);
+        return properties.isEnabled() ? new ConcurrencyLimitingClient(client, properties, meterRegistry) : client;
+    }
+
+    // Заголовок Accept для всех Feign-клиентов, чтобы ответы приходили в CBOR
+    @Bean
+    @ConditionalOnProperty(name = "feign.cbor.enabled", havingValue = "true", matchIfMissing = true)
+    public RequestInterceptor cborAcceptInterceptor() {
+        return new CborAcceptInterceptor();
+    }
+
+    // Заголовок, по которому получатель отличает запросы сервисов от пользовательских
+    @Bean
+    public RequestInterceptor internalCallInterceptor(@Value("${spring.application.name:unknown}") String applicationName) {
+        return new InternalCallInterceptor(applicationName);
+    }
+
+    // Подстраховка идемпотентных чтений вторым запросом
+    @Bean
+    public HedgedRequestExecutor hedgedRequestExecutor(HedgingProperties properties, MeterRegistry meterRegistry) {
+        return new HedgedRequestExecutor(properties, meterRegistry);
+    }
+}
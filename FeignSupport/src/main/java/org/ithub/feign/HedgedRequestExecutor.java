@@ -0,0 +1,214 @@
+package org.ithub.feign;
+
+import feign.FeignException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Выполняет идемпотентные чтения с "подстраховкой": если ответ не пришел за время,
+// соответствующее заданному перцентилю задержек, отправляется второй запрос и берется первый ответ.
+// Доля дополнительных запросов ограничена бюджетом. Основные запросы выполняются в отдельном пуле без
+// ограничения размера (их число и так ограничено потоками вызывающих), а фиксированный пул занят только
+// дополнительными запросами: если он заполнен, подстраховка пропускается
+@Slf4j
+public class HedgedRequestExecutor {
+    private static final int WINDOW_SIZE = 256;
+    private static final int RECOMPUTE_EVERY = 32;
+    private static final double MAX_BUDGET_TOKENS = 10;
+
+    private final HedgingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService primaryExecutor;
+    private final ExecutorService hedgeExecutor;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    public HedgedRequestExecutor(HedgingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.primaryExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory("hedged-primary-"));
+        this.hedgeExecutor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory("hedged-request-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <T> T execute(String operationName, Supplier<T> call) {
+        if (!properties.isEnabled()) {
+            return call.get();
+        }
+
+        Operation operation = operations.computeIfAbsent(operationName, Operation::new);
+        operation.requests.increment();
+
+        CompletableFuture<T> primary = submit(operation, call, primaryExecutor);
+        try {
+            return primary.get(operation.hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (!operation.tryConsumeBudget()) {
+                return join(primary);
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + operationName, e);
+        }
+
+        CompletableFuture<T> hedge;
+        try {
+            hedge = submit(operation, call, hedgeExecutor);
+        } catch (RejectedExecutionException e) {
+            log.debug("Hedge pool is busy, waiting for the primary request of {}", operationName);
+            return join(primary);
+        }
+        log.debug("Sent hedged request for {}", operationName);
+        operation.hedges.increment();
+        T result = join(firstSuccessful(primary, hedge));
+        if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == result) {
+            operation.hedgeWins.increment();
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<T> submit(Operation operation, Supplier<T> call, ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                T result = call.get();
+                operation.record(System.nanoTime() - start);
+                return result;
+            } catch (FeignException e) {
+                if (isNotModified(e)) {
+                    operation.record(System.nanoTime() - start);
+                }
+                throw e;
+            }
+        }, executor);
+    }
+
+    // Завершается первым успешным ответом (304 Not Modified тоже считается успехом);
+    // ошибка возвращается, только если упали оба запроса
+    private <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : Arrays.asList(first, second)) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (isNotModified(error)) {
+                    result.completeExceptionally(error);
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    private boolean isNotModified(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof FeignException feignException
+                && feignException.status() == HttpStatus.NOT_MODIFIED.value();
+    }
+
+    private <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private RuntimeException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new RuntimeException(error);
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        primaryExecutor.shutdown();
+        hedgeExecutor.shutdown();
+    }
+
+    private class Operation {
+        private final long[] latencies = new long[WINDOW_SIZE];
+        private final Counter requests;
+        private final Counter hedges;
+        private final Counter hedgeWins;
+        private int samples;
+        private int position;
+        private long hedgeDelayNanos;
+        private double budgetTokens = MAX_BUDGET_TOKENS;
+
+        Operation(String name) {
+            this.requests = Counter.builder("feign.hedging.requests").tag("operation", name)
+                    .description("Calls made through the hedging executor").register(meterRegistry);
+            this.hedges = Counter.builder("feign.hedging.hedges").tag("operation", name)
+                    .description("Hedged requests sent").register(meterRegistry);
+            this.hedgeWins = Counter.builder("feign.hedging.wins").tag("operation", name)
+                    .description("Hedged requests that answered first").register(meterRegistry);
+            this.hedgeDelayNanos = properties.getMaxDelay().toNanos();
+        }
+
+        synchronized void record(long latencyNanos) {
+            latencies[position] = latencyNanos;
+            position = (position + 1) % WINDOW_SIZE;
+            samples++;
+            if (samples % RECOMPUTE_EVERY == 0) {
+                long[] window = Arrays.copyOf(latencies, Math.min(samples, WINDOW_SIZE));
+                Arrays.sort(window);
+                long percentile = window[(int) Math.ceil(properties.getPercentile() * window.length) - 1];
+                hedgeDelayNanos = Math.max(properties.getMinDelay().toNanos(),
+                        Math.min(properties.getMaxDelay().toNanos(), percentile));
+            }
+        }
+
+        synchronized long hedgeDelayNanos() {
+            // Каждый запрос пополняет бюджет на budgetRatio, каждый дополнительный запрос тратит единицу
+            budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + properties.getBudgetRatio());
+            return hedgeDelayNanos;
+        }
+
+        synchronized boolean tryConsumeBudget() {
+            if (budgetTokens < 1) {
+                return false;
+            }
+            budgetTokens -= 1;
+            return true;
+        }
+    }
+}
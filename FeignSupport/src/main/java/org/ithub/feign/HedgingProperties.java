@@ -0,0 +1,17 @@
+package org.ithub.feign;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "feign.hedging")
+public class HedgingProperties {
+    private boolean enabled = true;
+    private double percentile = 0.95;
+    private Duration minDelay = Duration.ofMillis(50);
+    private Duration maxDelay = Duration.ofSeconds(1);
+    private double budgetRatio = 0.05;
+    private int poolSize = 16;
+}
@@ -0,0 +1,26 @@
+package org.ithub.feign;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "feign.http-pool")
+public class HttpPoolProperties {
+    private int maxTotal = 200;
+    private int defaultMaxPerTarget = 50;
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    private Duration timeToLive = Duration.ofMinutes(5);
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+    private Map<String, Target> targets = new LinkedHashMap<>();
+
+    @Data
+    public static class Target {
+        private String url;
+        private int maxConnections;
+    }
+}
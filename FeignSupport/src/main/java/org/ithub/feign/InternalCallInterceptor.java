@@ -0,0 +1,21 @@
+package org.ithub.feign;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+
+// Помечает запросы между сервисами именем вызывающего сервиса, чтобы получатель мог отличить их
+// от запросов пользователей (например, не считать их просмотрами товара)
+public class InternalCallInterceptor implements RequestInterceptor {
+    public static final String HEADER = "X-Internal-Call";
+
+    private final String applicationName;
+
+    public InternalCallInterceptor(String applicationName) {
+        this.applicationName = applicationName;
+    }
+
+    @Override
+    public void apply(RequestTemplate template) {
+        template.header(HEADER, applicationName);
+    }
+}
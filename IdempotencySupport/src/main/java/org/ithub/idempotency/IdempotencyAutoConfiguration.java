@@ -0,0 +1,18 @@
+package org.ithub.idempotency;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Подключает IdempotencyService в сервис, зависящий от модуля. Пакет модуля регистрируется
+// до настройки JPA, чтобы таблица ключей и ее репозиторий находились вместе с сущностями сервиса.
+// Планировщик включается для очистки устаревших ключей
+@AutoConfiguration(before = {HibernateJpaAutoConfiguration.class, JpaRepositoriesAutoConfiguration.class})
+@AutoConfigurationPackage
+@EnableScheduling
+@Import(IdempotencyService.class)
+public class IdempotencyAutoConfiguration {
+}
@@ -0,0 +1,7 @@
+package org.ithub.idempotency;
+
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
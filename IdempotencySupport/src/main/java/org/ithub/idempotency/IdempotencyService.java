@@ -0,0 +1,294 @@
+package org.ithub.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Выполняет запрос один раз для Idempotency-Key. Перед таблицей ключей стоит ограниченный LRU-кэш
+// завершенных ответов; дубликаты на этом экземпляре ждут выполняющийся запрос, а на других
+// экземплярах опрашивают таблицу, пока ответ не будет сохранен. Ключи старше retention удаляются по расписанию
+@Slf4j
+public class IdempotencyService {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAY_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration waitTimeout;
+    private final Duration staleTimeout;
+    private final Duration pollInterval;
+    private final Duration retention;
+
+    // Ограниченный LRU-кэш завершенных ответов перед таблицей ключей
+    private final Map<String, IdempotencyRecord> completedCache;
+    // Запросы, которые обрабатываются сейчас на этом экземпляре
+    private final Map<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyRecordRepository recordRepository,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${idempotency.wait-timeout:30s}") Duration waitTimeout,
+                              @Value("${idempotency.stale-timeout:5m}") Duration staleTimeout,
+                              @Value("${idempotency.poll-interval:200ms}") Duration pollInterval,
+                              @Value("${idempotency.retention:24h}") Duration retention) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+        this.waitTimeout = waitTimeout;
+        this.staleTimeout = staleTimeout;
+        this.pollInterval = pollInterval;
+        this.retention = retention;
+        this.completedCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    // Выполняет запрос один раз для ключа; повторы получают сохраненный ответ,
+    // одновременные дубликаты ждут результата выполняющегося запроса
+    public <T> ResponseEntity<T> execute(String key, Object request, Class<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        return execute(key, request, responseType, response -> true, Optional::empty, action);
+    }
+
+    public <T> ResponseEntity<T> execute(String key, Object request, Class<T> responseType,
+                                         Predicate<ResponseEntity<T>> storable,
+                                         Supplier<ResponseEntity<T>> action) {
+        return execute(key, request, responseType, storable, Optional::empty, action);
+    }
+
+    // storable решает, окончательный ли ответ. Неокончательный ответ получают только одновременные
+    // дубликаты, ключ освобождается, и следующий повтор выполняет запрос заново.
+    // existing ищет результат запроса в данных сервиса перед повторным захватом зависшего ключа: если экземпляр
+    // упал после фиксации бизнес-транзакции, но до сохранения ответа, запрос не выполняется второй раз
+    public <T> ResponseEntity<T> execute(String key, Object request, Class<T> responseType,
+                                         Predicate<ResponseEntity<T>> storable,
+                                         Supplier<Optional<ResponseEntity<T>>> existing,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+
+        String requestHash = hash(request);
+        IdempotencyRecord cached = completedCache.get(key);
+        if (cached != null) {
+            return replay(cached, requestHash, responseType);
+        }
+
+        CompletableFuture<IdempotencyRecord> ownResult = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> inFlightResult = inFlight.putIfAbsent(key, ownResult);
+        if (inFlightResult != null) {
+            log.info("Waiting for in-flight request with idempotency key {}", key);
+            return replay(await(key, inFlightResult), requestHash, responseType);
+        }
+
+        try {
+            Claim claim = claim(key, requestHash);
+            IdempotencyRecord record = claim.record();
+            if (record.getStatus() == IdempotencyStatus.COMPLETED) {
+                completedCache.put(key, record);
+                ownResult.complete(record);
+                return replay(record, requestHash, responseType);
+            }
+
+            ResponseEntity<T> response;
+            try {
+                response = claim.reclaimed() ? existing.get().orElse(null) : null;
+                if (response != null) {
+                    log.warn("Stale idempotency key {} already has a result, storing it without re-running", key);
+                } else {
+                    response = action.get();
+                }
+            } catch (RuntimeException e) {
+                // Неуспешный запрос не сохраняем, клиент может повторить его с тем же ключом
+                release(record);
+                throw e;
+            }
+
+            record.setResponseStatus(response.getStatusCode().value());
+            record.setResponseBody(toJson(response.getBody()));
+            record.setCompletedAt(LocalDateTime.now());
+            if (!storable.test(response)) {
+                log.info("Response for idempotency key {} is not final, key released for retries", key);
+                release(record);
+                ownResult.complete(record);
+                return response;
+            }
+
+            record.setStatus(IdempotencyStatus.COMPLETED);
+            record = recordRepository.save(record);
+
+            completedCache.put(key, record);
+            ownResult.complete(record);
+            return response;
+        } catch (RuntimeException e) {
+            ownResult.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, ownResult);
+        }
+    }
+
+    // Находит сохраненный ключ или занимает новый. Запись IN_PROGRESS означает, что запрос обрабатывается
+    // на другом экземпляре: ждем, пока там сохранят ответ или освободят ключ, но не дольше waitTimeout
+    private Claim claim(String key, String requestHash) {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            IdempotencyRecord existing = recordRepository.findById(key).orElse(null);
+            if (existing == null) {
+                IdempotencyRecord created = tryInsert(key, requestHash);
+                if (created != null) {
+                    return new Claim(created, false);
+                }
+            } else if (existing.getStatus() == IdempotencyStatus.COMPLETED) {
+                return new Claim(existing, false);
+            } else if (existing.getCreatedAt().isBefore(LocalDateTime.now().minus(staleTimeout))) {
+                return new Claim(reclaim(existing, requestHash), true);
+            }
+
+            if (System.nanoTime() >= deadline) {
+                throw new IdempotencyConflictException("Request with idempotency key " + key + " is still in progress");
+            }
+            log.debug("Idempotency key {} is in progress on another instance, polling", key);
+            sleep(key);
+        }
+    }
+
+    // null, если ключ одновременно занял другой экземпляр
+    private IdempotencyRecord tryInsert(String key, String requestHash) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setKey(key);
+        record.setRequestHash(requestHash);
+        record.setStatus(IdempotencyStatus.IN_PROGRESS);
+        record.setCreatedAt(LocalDateTime.now());
+        try {
+            return recordRepository.saveAndFlush(record);
+        } catch (DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    // Обработка зависла или экземпляр упал, забираем ключ себе. Если ключ одновременно забрал
+    // другой запрос, версия записи уже изменилась
+    private IdempotencyRecord reclaim(IdempotencyRecord existing, String requestHash) {
+        log.warn("Reclaiming stale idempotency key {}", existing.getKey());
+        existing.setRequestHash(requestHash);
+        existing.setCreatedAt(LocalDateTime.now());
+        try {
+            return recordRepository.saveAndFlush(existing);
+        } catch (OptimisticLockingFailureException e) {
+            throw new IdempotencyConflictException(
+                    "Request with idempotency key " + existing.getKey() + " was taken over by another request");
+        }
+    }
+
+    // Удаляет ключи старше retention; повтор с таким ключом выполняется как новый запрос
+    @Scheduled(fixedDelayString = "${idempotency.cleanup-interval:3600000}")
+    public void purgeExpired() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        int deleted = recordRepository.deleteCreatedBefore(before);
+        synchronized (completedCache) {
+            completedCache.values().removeIf(record -> record.getCreatedAt().isBefore(before));
+        }
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    private void release(IdempotencyRecord record) {
+        try {
+            recordRepository.delete(record);
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Idempotency key {} was already taken over by another request", record.getKey());
+        }
+    }
+
+    private void sleep(String key) {
+        try {
+            Thread.sleep(pollInterval.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for idempotency key " + key);
+        }
+    }
+
+    private IdempotencyRecord await(String key, CompletableFuture<IdempotencyRecord> inFlightResult) {
+        try {
+            return inFlightResult.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("Request with idempotency key " + key + " is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for idempotency key " + key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(IdempotencyRecord record, String requestHash, Class<T> responseType) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new IllegalArgumentException(
+                    "Idempotency key " + record.getKey() + " was already used with a different request");
+        }
+
+        log.info("Replaying stored response for idempotency key {}", record.getKey());
+        try {
+            T body = record.getResponseBody() == null
+                    ? null
+                    : objectMapper.readValue(record.getResponseBody(), responseType);
+            return ResponseEntity.status(record.getResponseStatus())
+                    .header(IDEMPOTENT_REPLAY_HEADER, "true")
+                    .body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read stored response for key " + record.getKey(), e);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to store response", e);
+        }
+    }
+
+    // reclaimed - ключ забран у зависшего запроса, который мог успеть выполниться
+    private record Claim(IdempotencyRecord record, boolean reclaimed) {
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(toJson(request).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package org.ithub.idempotency;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,    // Запрос обрабатывается
+    COMPLETED       // Ответ сохранен и возвращается при повторах
+}
@@ -0,0 +1,67 @@
+package org.ithub.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Objects;
+
+// Денежная сумма в минимальных единицах валюты (копейках).
+// Арифметика выполняется над long, BigDecimal создается только на границах: в базе и в JSON
+public record Money(long minorUnits, Currency currency) implements Comparable<Money> {
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("RUB");
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+
+    public Money {
+        Objects.requireNonNull(currency, "currency");
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits, DEFAULT_CURRENCY);
+    }
+
+    // Сумма не округляется: лишние знаки после запятой и выход за диапазон long дают ArithmeticException
+    public static Money of(BigDecimal amount) {
+        int fractionDigits = DEFAULT_CURRENCY.getDefaultFractionDigits();
+        if (amount.stripTrailingZeros().scale() > fractionDigits) {
+            throw new ArithmeticException("Amount " + amount.toPlainString() + " has more than "
+                    + fractionDigits + " fraction digits");
+        }
+        return ofMinor(amount.setScale(fractionDigits, RoundingMode.UNNECESSARY)
+                .unscaledValue()
+                .longValueExact());
+    }
+
+    public Money plus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money times(int quantity) {
+        return new Money(Math.multiplyExact(minorUnits, quantity), currency);
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+    }
+
+    private void checkCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.ithub.money;
+
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+
+// Подключает Money в сервис, зависящий от модуля: пакет регистрируется до настройки JPA, чтобы
+// MoneyConverter применялся к сущностям сервиса, а модуль Jackson подхватывается ObjectMapper
+@AutoConfiguration(before = HibernateJpaAutoConfiguration.class)
+@AutoConfigurationPackage
+public class MoneyAutoConfiguration {
+
+    @Bean
+    public MoneyJacksonModule moneyJacksonModule() {
+        return new MoneyJacksonModule();
+    }
+}
@@ -0,0 +1,44 @@
+package org.ithub.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+// Money передается числом, как раньше BigDecimal, поэтому формат API не меняется
+public class MoneyJacksonModule extends SimpleModule {
+
+    public MoneyJacksonModule() {
+        super("MoneyJacksonModule");
+        addSerializer(Money.class, new Serializer());
+        addDeserializer(Money.class, new Deserializer());
+    }
+
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money money, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(money.toBigDecimal());
+        }
+    }
+
+    // Сумма читается стандартным десериализатором BigDecimal, поэтому строка "10.00" тоже принимается.
+    // Лишние знаки после запятой и сумма вне диапазона long в копейках - ошибка формата (400), а не 500
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            BigDecimal amount = context.readValue(parser, BigDecimal.class);
+            try {
+                return Money.of(amount);
+            } catch (ArithmeticException e) {
+                throw InvalidFormatException.from(parser, "Invalid amount: " + e.getMessage(), amount, Money.class);
+            }
+        }
+    }
+}
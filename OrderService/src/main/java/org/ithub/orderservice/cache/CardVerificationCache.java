@@ -0,0 +1,35 @@
+package org.ithub.orderservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// CVV асинхронного платежа хранится только в памяти экземпляра, создавшего заказ, и не дольше ttl.
+// Если платеж доставляет другой экземпляр или CVV уже истек, платеж отправляется без него
+@Component
+public class CardVerificationCache {
+    private final Cache<Long, String> cache;
+
+    public CardVerificationCache(@Value("${order.payment.cvv-ttl:15m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public void put(Long orderId, String cvv) {
+        if (cvv != null) {
+            cache.put(orderId, cvv);
+        }
+    }
+
+    public String get(Long orderId) {
+        return cache.getIfPresent(orderId);
+    }
+
+    public void invalidate(Long orderId) {
+        cache.invalidate(orderId);
+    }
+}
@@ -0,0 +1,107 @@
+package org.ithub.orderservice.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.ithub.orderservice.dto.catalog.ProductDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Локальный кэш товаров каталога с ограничением по объему и TTL.
+// Отсутствующие в каталоге товары тоже кэшируются, но на более короткий срок
+@Component
+public class ProductCache {
+    private final Cache<Long, Entry> cache;
+
+    public ProductCache(MeterRegistry meterRegistry,
+                        @Value("${order.product-cache.max-size:16MB}") DataSize maxSize,
+                        @Value("${order.product-cache.ttl:10m}") Duration ttl,
+                        @Value("${order.product-cache.negative-ttl:1m}") Duration negativeTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Long productId, Entry entry) -> entry.estimatedSize())
+                .expireAfter(new Expiry<Long, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Long productId, Entry entry, long currentTime) {
+                        return (entry.isNotFound() ? negativeTtl : ttl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long productId, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(productId, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long productId, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "catalogProducts");
+    }
+
+    // Возвращает запись, если она получена из каталога не раньше чем maxAge назад
+    public Entry getIfFresh(Long productId, Duration maxAge) {
+        Entry entry = cache.getIfPresent(productId);
+        if (entry == null || entry.fetchedAt().isBefore(Instant.now().minus(maxAge))) {
+            return null;
+        }
+        return entry;
+    }
+
+    // Возвращает запись независимо от ее возраста, например для условного запроса с If-None-Match
+    public Entry getIfPresent(Long productId) {
+        return cache.getIfPresent(productId);
+    }
+
+    public void put(ProductDto product, String eTag) {
+        cache.put(product.getId(), new Entry(product, eTag, Instant.now()));
+    }
+
+    // Пакетный ответ приходит без ETag, поэтому сохраняем ETag имеющейся записи. Версии товара только растут,
+    // так что старый ETag может дать лишний 200, но не ложный 304
+    public void putKeepingETag(ProductDto product) {
+        Entry existing = cache.getIfPresent(product.getId());
+        put(product, existing != null ? existing.eTag() : null);
+    }
+
+    // Каталог подтвердил, что товар не изменился (304) - продлеваем запись
+    public void revalidated(Entry entry) {
+        cache.put(entry.product().getId(), new Entry(entry.product(), entry.eTag(), Instant.now()));
+    }
+
+    public void putNotFound(Long productId) {
+        cache.put(productId, new Entry(null, null, Instant.now()));
+    }
+
+    public void invalidate(Long productId) {
+        cache.invalidate(productId);
+    }
+
+    public record Entry(ProductDto product, String eTag, Instant fetchedAt) {
+
+        public boolean isNotFound() {
+            return product == null;
+        }
+
+        // Грубая оценка занимаемой памяти: заголовки объектов плюс символы строк
+        int estimatedSize() {
+            if (product == null) {
+                return 64;
+            }
+            int chars = length(product.getName()) + length(product.getDescription());
+            return 160 + chars * 2;
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : value.length();
+        }
+    }
+}
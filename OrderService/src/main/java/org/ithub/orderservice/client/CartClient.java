@@ -1,11 +1,15 @@
 package org.ithub.orderservice.client;
 
+import org.ithub.orderservice.dto.cart.CartCheckoutDto;
 import org.ithub.orderservice.dto.cart.CartDto;
 import org.ithub.orderservice.dto.cart.CartItemResponse;
+import org.ithub.orderservice.dto.cart.CheckoutCompletionRequestDto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 
 import java.util.List;
 
@@ -20,4 +24,17 @@ public interface CartClient {
 
     @DeleteMapping("api/carts/user/{userId}")
     void clearCart(@PathVariable("userId") Long userId);
-}
\ No newline at end of file
+
+    // Блокирует корзину для оформления и возвращает ее снимок; позиции остаются в корзине
+    @PostMapping("api/carts/user/{userId}/checkout")
+    CartCheckoutDto checkout(@PathVariable("userId") Long userId);
+
+    // Снимает блокировку; повторный вызов ничего не меняет
+    @PostMapping("api/carts/user/{userId}/checkout/{checkoutId}/release")
+    CartDto releaseCheckout(@PathVariable("userId") Long userId, @PathVariable("checkoutId") String checkoutId);
+
+    // Очищает корзину после фиксации заказа; повторный вызов ничего не меняет
+    @PostMapping("api/carts/user/{userId}/checkout/{checkoutId}/complete")
+    CartDto completeCheckout(@PathVariable("userId") Long userId, @PathVariable("checkoutId") String checkoutId,
+                             @RequestBody CheckoutCompletionRequestDto request);
+}
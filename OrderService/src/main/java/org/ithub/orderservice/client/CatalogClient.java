@@ -1,18 +1,45 @@
 package org.ithub.orderservice.client;
 
 import org.ithub.orderservice.dto.catalog.ProductDto;
+import org.ithub.orderservice.dto.catalog.StockCommitRequestDto;
+import org.ithub.orderservice.dto.catalog.StockReservationRequestDto;
+import org.ithub.orderservice.dto.catalog.StockReservationResponseDto;
+import org.ithub.orderservice.dto.catalog.StockRestockRequestDto;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PutMapping;
-import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+import java.util.List;
 
 @FeignClient(name = "catalog-service", url = "${catalog.service.url}")
 public interface CatalogClient {
 
+    // При совпадении ETag каталог отвечает 304, который приходит как FeignException со статусом 304
     @GetMapping("api/catalog/{id}")
-    ProductDto getProductById(@PathVariable("id") Long productId);
+    ResponseEntity<ProductDto> getProductById(@PathVariable("id") Long productId,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String eTag);
+
+    @PostMapping("api/catalog/batch")
+    List<ProductDto> getProductsByIds(@RequestBody List<Long> productIds);
+
+    @PostMapping("api/stock/reservations")
+    StockReservationResponseDto reserveStock(@RequestBody StockReservationRequestDto request);
+
+    // Повтор с тем же reservationId каталог игнорирует
+    @PostMapping("api/stock/reservations/{reservationId}/commit")
+    void commitReservation(@PathVariable("reservationId") String reservationId,
+                           @RequestBody StockCommitRequestDto request);
+
+    @DeleteMapping("api/stock/reservations/{reservationId}")
+    void releaseReservation(@PathVariable("reservationId") String reservationId);
 
-    @PutMapping("api/catalog/{id}")
-    void updateStock(@PathVariable("id") Long productId);
+    // Повтор с тем же restockId каталог игнорирует
+    @PostMapping("api/stock/restocks")
+    void restock(@RequestBody StockRestockRequestDto request);
 }
@@ -13,7 +13,8 @@ import java.util.List;
 public interface PaymentClient {
 
     @PostMapping("/api/payments")
-    ResponseEntity<PaymentResponseDto> processPayment(@RequestBody PaymentRequestDto paymentRequest);
+    ResponseEntity<PaymentResponseDto> processPayment(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                                      @RequestBody PaymentRequestDto paymentRequest);
 
     @GetMapping("/api/payments/{paymentId}")
     ResponseEntity<PaymentResponseDto> getPaymentStatus(@PathVariable Long paymentId);
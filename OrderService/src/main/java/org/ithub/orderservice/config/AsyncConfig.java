@@ -0,0 +1,44 @@
+package org.ithub.orderservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    // Пул для параллельной проверки наличия товаров при создании заказа.
+    // При переполнении очереди проверка отклоняется, чтобы не выполняться в потоке запроса вне дедлайна
+    @Bean
+    public ThreadPoolTaskExecutor availabilityCheckExecutor(
+            @Value("${order.availability-check.pool-size:8}") int poolSize,
+            @Value("${order.availability-check.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("availability-check-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    // Пул для асинхронной обработки платежей после создания заказа. При переполнении задача отклоняется
+    // и платеж остается в outbox: его доставит relay, а не поток запроса
+    @Bean
+    public ThreadPoolTaskExecutor paymentExecutor(
+            @Value("${order.checkout.payment-pool-size:16}") int poolSize,
+            @Value("${order.checkout.payment-queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("payment-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -5,8 +5,11 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.idempotency.IdempotencyConflictException;
+import org.ithub.idempotency.IdempotencyService;
 import org.ithub.orderservice.dto.OrderDto;
 import org.ithub.orderservice.dto.OrderRequest;
+import org.ithub.orderservice.dto.OrderSliceDto;
 import org.ithub.orderservice.dto.OrderStatusUpdateRequest;
 import org.ithub.orderservice.exception.InvalidOrderStateException;
 import org.ithub.orderservice.exception.OrderNotFoundException;
@@ -17,14 +20,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 @RestController
@@ -33,13 +41,18 @@ import java.util.Map;
 @Tag(name = "Order Controller", description = "API для управления заказами")
 public class OrderController {
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping
     @Operation(summary = "Создать новый заказ")
-    public ResponseEntity<OrderDto> createOrder(@Valid @RequestBody OrderRequest orderRequest) {
+    public ResponseEntity<OrderDto> createOrder(
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody OrderRequest orderRequest) {
         log.info("REST request to create order for user: {}", orderRequest.getUserId());
-        OrderDto createdOrder = orderService.createOrder(orderRequest);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
+        // Если экземпляр упал после создания заказа, но до сохранения ответа, повтор найдет заказ по ключу
+        return idempotencyService.execute(idempotencyKey, orderRequest, OrderDto.class, response -> true,
+                () -> orderService.findByIdempotencyKey(idempotencyKey).map(this::createdResponse),
+                () -> createdResponse(orderService.createOrder(orderRequest, idempotencyKey)));
     }
 
     @GetMapping("/{orderId}")
@@ -72,6 +85,18 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    @GetMapping("/status/{status}/seek")
+    @Operation(summary = "Получить заказы по статусу с keyset-пагинацией")
+    public ResponseEntity<OrderSliceDto> getOrdersByStatusAfter(
+            @PathVariable OrderStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        log.info("REST request to get orders with status: {}, cursor: {}, size: {}", status, cursor, size);
+        OrderSliceDto orders = orderService.getOrdersByStatusAfter(status, cursor, size);
+        return ResponseEntity.ok(orders);
+    }
+
     @PutMapping("/{orderId}/status")
     @Operation(summary = "Обновить статус заказа")
     public ResponseEntity<OrderDto> updateOrderStatus(
@@ -105,6 +130,31 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    @GetMapping("/date-range/export")
+    @Operation(summary = "Потоковая выгрузка заказов за период в формате NDJSON")
+    public ResponseEntity<StreamingResponseBody> exportOrdersByDateRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+
+        log.info("REST request to export orders between {} and {}, gzip: {}", startDate, endDate, gzip);
+        StreamingResponseBody body = outputStream -> {
+            if (gzip) {
+                GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, 8192);
+                orderService.exportOrdersByDateRange(startDate, endDate, gzipStream);
+                gzipStream.finish();
+            } else {
+                orderService.exportOrdersByDateRange(startDate, endDate, outputStream);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @ExceptionHandler({OrderNotFoundException.class, ProductNotFoundException.class})
     public ResponseEntity<Map<String, String>> handleNotFoundException(Exception e) {
         Map<String, String> response = new HashMap<>();
@@ -112,10 +162,27 @@ public class OrderController {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
     }
 
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<Map<String, String>> handleConflictException(Exception e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
     @ExceptionHandler({InvalidOrderStateException.class, IllegalStateException.class, IllegalArgumentException.class})
     public ResponseEntity<Map<String, String>> handleBadRequestException(Exception e) {
         Map<String, String> response = new HashMap<>();
         response.put("error", e.getMessage());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
     }
+
+    private ResponseEntity<OrderDto> createdResponse(OrderDto createdOrder) {
+        // В асинхронном режиме платеж еще обрабатывается, результат доступен через GET /api/orders/{orderId}
+        if (orderService.isAsyncPayment() && createdOrder.getStatus() == OrderStatus.CREATED) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .location(URI.create("/api/orders/" + createdOrder.getId()))
+                    .body(createdOrder);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
+    }
 }
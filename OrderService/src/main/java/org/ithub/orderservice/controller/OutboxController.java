@@ -0,0 +1,30 @@
+package org.ithub.orderservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.orderservice.service.OutboxRelay;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/orders/outbox")
+@RequiredArgsConstructor
+@Tag(name = "Outbox Controller", description = "API для обслуживания outbox заказов")
+public class OutboxController {
+    private final OutboxRelay outboxRelay;
+
+    @PostMapping("/redrive")
+    @Operation(summary = "Повторно запустить события outbox с исчерпанными попытками")
+    public ResponseEntity<Map<String, Integer>> redriveFailed(@RequestParam(required = false) Long orderId) {
+        log.info("REST request to re-drive failed outbox events for order: {}", orderId);
+        return ResponseEntity.ok(Map.of("redriven", outboxRelay.redriveFailed(orderId)));
+    }
+}
@@ -0,0 +1,18 @@
+package org.ithub.orderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSliceDto {
+    private List<OrderDto> content = new ArrayList<>();
+    private int size;
+    private boolean hasNext;
+    private String nextCursor; // Непрозрачный курсор для запроса следующей страницы
+}
@@ -0,0 +1,17 @@
+package org.ithub.orderservice.dto.cart;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartCheckoutDto {
+    private String checkoutId;
+    private Instant checkedOutAt;
+    private Instant expiresAt;
+    private CartDto cart;
+}
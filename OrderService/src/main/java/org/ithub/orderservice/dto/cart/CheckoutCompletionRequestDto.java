@@ -0,0 +1,16 @@
+package org.ithub.orderservice.dto.cart;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Позиции заказа: если блокировка корзины истекла до завершения оформления, CartService вычтет только их
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutCompletionRequestDto {
+    private List<CheckoutLineDto> lines = new ArrayList<>();
+}
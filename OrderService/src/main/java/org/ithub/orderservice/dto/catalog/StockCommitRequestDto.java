@@ -0,0 +1,16 @@
+package org.ithub.orderservice.dto.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Позиции передаются вместе с подтверждением: если резерв успел истечь, каталог все равно спишет товары
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockCommitRequestDto {
+    private String reservationId;
+    private List<StockLineDto> lines;
+}
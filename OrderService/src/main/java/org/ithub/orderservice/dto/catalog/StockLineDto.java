@@ -0,0 +1,13 @@
+package org.ithub.orderservice.dto.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLineDto {
+    private Long productId;
+    private int quantity;
+}
@@ -0,0 +1,16 @@
+package org.ithub.orderservice.dto.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationRequestDto {
+    private List<StockLineDto> lines;
+    private Duration ttl;
+}
@@ -0,0 +1,17 @@
+package org.ithub.orderservice.dto.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationResponseDto {
+    private String reservationId;
+    private Instant expiresAt;
+    private List<StockLineDto> lines;
+}
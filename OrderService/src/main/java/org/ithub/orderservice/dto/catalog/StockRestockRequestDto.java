@@ -0,0 +1,15 @@
+package org.ithub.orderservice.dto.catalog;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockRestockRequestDto {
+    private String restockId;
+    private List<StockLineDto> lines;
+}
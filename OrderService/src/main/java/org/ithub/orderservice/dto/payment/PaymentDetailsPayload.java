@@ -0,0 +1,22 @@
+package org.ithub.orderservice.dto.payment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Платежные реквизиты в outbox: номер карты зашифрован, CVV не сохраняется вовсе
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentDetailsPayload {
+    private String encryptedCardNumber;
+    private String cardHolderName;
+    private String expiryDate;
+
+    private String accountNumber;
+    private String bankCode;
+
+    private String walletId;
+}
@@ -4,8 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-
-import java.math.BigDecimal;
+import org.ithub.money.Money;
 
 @Data
 @Builder
@@ -13,7 +12,7 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 public class PaymentRequestDto {
     private Long orderId;
-    private BigDecimal amount;
+    private Money amount;
     private String paymentMethod;
 
     // Поля для разных методов оплаты
@@ -0,0 +1,13 @@
+package org.ithub.orderservice.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Публикуется при создании заказа в асинхронном режиме оформления. Сам запрос на платеж
+// хранится в outbox, платеж обрабатывается после фиксации транзакции
+@Data
+@AllArgsConstructor
+public class OrderPaymentRequestedEvent {
+    private Long orderId;
+    private Long outboxEventId;
+}
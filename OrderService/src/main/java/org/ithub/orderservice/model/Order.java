@@ -4,14 +4,16 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.ithub.money.Money;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_status_order_date_id", columnList = "status, order_date, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,8 +35,8 @@ public class Order{
     @Column(nullable = false)
     private OrderStatus status;
 
-    @Column(nullable = false)
-    private BigDecimal totalAmount;
+    @Column(nullable = false, precision = 19, scale = 2)
+    private Money totalAmount;
 
     @Column(nullable = false)
     private String shippingAddress;
@@ -60,6 +62,10 @@ public class Order{
 
     private Long paymentId;
 
+    // Ключ идемпотентности запроса, создавшего заказ: по нему находится заказ, если ответ не успели сохранить
+    @Column(unique = true)
+    private String idempotencyKey;
+
     @PrePersist
     protected void onCreate() {
         orderDate = LocalDateTime.now();
@@ -81,9 +87,12 @@ public class Order{
         item.setOrder(null);
     }
 
+    // Сумма считается в копейках без промежуточных объектов
     public void calculateTotal() {
-        this.totalAmount = items.stream()
-                .map(item -> item.getPrice().multiply(new BigDecimal(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long total = 0;
+        for (OrderItem item : items) {
+            total = Math.addExact(total, Math.multiplyExact(item.getPrice().minorUnits(), item.getQuantity()));
+        }
+        this.totalAmount = Money.ofMinor(total);
     }
 }
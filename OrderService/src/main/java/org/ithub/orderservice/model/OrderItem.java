@@ -4,8 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-
-import java.math.BigDecimal;
+import org.ithub.money.Money;
 
 @Entity
 @Table(name = "order_items")
@@ -28,13 +27,13 @@ public class OrderItem {
     @Column(nullable = false)
     private String productName;
 
-    @Column(nullable = false)
-    private BigDecimal price;
+    @Column(nullable = false, precision = 19, scale = 2)
+    private Money price;
 
     @Column(nullable = false)
     private int quantity;
 
-    public BigDecimal getSubtotal() {
-        return price.multiply(new BigDecimal(quantity));
+    public Money getSubtotal() {
+        return price.times(quantity);
     }
 }
\ No newline at end of file
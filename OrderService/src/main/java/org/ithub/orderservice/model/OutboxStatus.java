@@ -0,0 +1,7 @@
+package org.ithub.orderservice.model;
+
+public enum OutboxStatus {
+    PENDING,    // Ожидает отправки
+    SENT,       // Доставлено
+    FAILED      // Исчерпаны попытки доставки, ждет повторного запуска; блокирует более поздние события заказа
+}
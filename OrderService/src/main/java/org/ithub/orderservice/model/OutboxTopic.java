@@ -0,0 +1,10 @@
+package org.ithub.orderservice.model;
+
+// Получатель события outbox; порядок доставки сохраняется в рамках заказа и топика
+public enum OutboxTopic {
+    NOTIFICATION,   // Уведомления о заказе
+    PAYMENT,        // Асинхронная обработка платежа
+    CART_CHECKOUT,  // Очистка корзины, оформленной в заказ
+    RESTOCK,        // Возврат товаров отмененного заказа на склад
+    STOCK_COMMIT    // Подтверждение резерва товаров созданного заказа
+}
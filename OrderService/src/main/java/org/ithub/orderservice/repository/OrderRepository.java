@@ -1,20 +1,69 @@
 package org.ithub.orderservice.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.ithub.orderservice.model.Order;
 import org.ithub.orderservice.model.OrderStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserId(Long userId);
 
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsByIdempotencyKey(String idempotencyKey);
+
     Page<Order> findByStatus(OrderStatus status, Pageable pageable);
 
     List<Order> findByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    // Запросы для чтения списков заказов вместе с позициями, без N+1 при конвертации в DTO
+    @EntityGraph(attributePaths = "items")
+    List<Order> findWithItemsByUserId(Long userId);
+
+    @EntityGraph(attributePaths = "items")
+    List<Order> findWithItemsByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    @EntityGraph(attributePaths = "items")
+    List<Order> findWithItemsByIdIn(Collection<Long> ids);
+
+    // Пагинация по ID: join fetch коллекции нельзя совмещать с limit/offset в SQL
+    @Query(value = "select o.id from Order o where o.status = :status",
+            countQuery = "select count(o) from Order o where o.status = :status")
+    Page<Long> findIdsByStatus(@Param("status") OrderStatus status, Pageable pageable);
+
+    // Keyset-пагинация по (status, orderDate, id) без count-запроса и без offset
+    @Query("select o.id from Order o where o.status = :status order by o.orderDate desc, o.id desc")
+    List<Long> findIdsByStatusFirstPage(@Param("status") OrderStatus status, Limit limit);
+
+    @Query("select o.id from Order o where o.status = :status " +
+            "and (o.orderDate < :orderDate or (o.orderDate = :orderDate and o.id < :id)) " +
+            "order by o.orderDate desc, o.id desc")
+    List<Long> findIdsByStatusAfter(@Param("status") OrderStatus status,
+                                    @Param("orderDate") LocalDateTime orderDate,
+                                    @Param("id") Long id,
+                                    Limit limit);
+
+    // Потоковое чтение для выгрузки: строки забираются из курсора пачками по fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select o from Order o where o.orderDate between :startDate and :endDate order by o.orderDate, o.id")
+    Stream<Order> streamByOrderDateBetween(@Param("startDate") LocalDateTime startDate,
+                                           @Param("endDate") LocalDateTime endDate);
 }
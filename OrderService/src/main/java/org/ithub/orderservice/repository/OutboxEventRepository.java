@@ -0,0 +1,67 @@
+package org.ithub.orderservice.repository;
+
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    // Забирает готовые к отправке события с блокировкой строк. Строки, заблокированные другими экземплярами,
+    // пропускаются. Берется только самое раннее неотправленное событие каждого заказа, поэтому порядок
+    // доставки в рамках заказа и топика сохраняется и при нескольких экземплярах OrderService
+    @Query(value = "select * from order_outbox e " +
+            "where e.status = 'PENDING' and e.next_attempt_at <= :now " +
+            "and (e.claimed_until is null or e.claimed_until < :now) " +
+            "and not exists (select 1 from order_outbox p where p.order_id = e.order_id and p.topic = e.topic " +
+            "and p.status in ('PENDING', 'FAILED') and p.id < e.id) " +
+            "order by e.id limit :limit " +
+            "for update skip locked", nativeQuery = true)
+    List<OutboxEvent> lockDueEvents(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Продлевает аренду, если событие все еще арендовано с ожидаемым сроком
+    @Modifying
+    @Transactional
+    @Query("update OutboxEvent e set e.claimedUntil = :claimedUntil " +
+            "where e.id = :id and e.status = org.ithub.orderservice.model.OutboxStatus.PENDING " +
+            "and e.claimedUntil = :expected")
+    int renewClaim(@Param("id") Long id, @Param("expected") LocalDateTime expected,
+                   @Param("claimedUntil") LocalDateTime claimedUntil);
+
+    Optional<OutboxEvent> findFirstByStatusOrderByIdAsc(OutboxStatus status);
+
+    long countByStatus(OutboxStatus status);
+
+    // Возвращает события с исчерпанными попытками в очередь
+    @Modifying
+    @Transactional
+    @Query("update OutboxEvent e set e.status = org.ithub.orderservice.model.OutboxStatus.PENDING, " +
+            "e.attempts = 0, e.nextAttemptAt = :now, e.claimedUntil = null " +
+            "where e.status = org.ithub.orderservice.model.OutboxStatus.FAILED")
+    int redriveFailed(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("update OutboxEvent e set e.status = org.ithub.orderservice.model.OutboxStatus.PENDING, " +
+            "e.attempts = 0, e.nextAttemptAt = :now, e.claimedUntil = null " +
+            "where e.status = org.ithub.orderservice.model.OutboxStatus.FAILED and e.orderId = :orderId")
+    int redriveFailedForOrder(@Param("orderId") Long orderId, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("delete from OutboxEvent e where e.status = :status and e.sentAt < :before")
+    int deleteSentBefore(@Param("status") OutboxStatus status, @Param("before") LocalDateTime before);
+
+    @Modifying
+    @Transactional
+    @Query("delete from OutboxEvent e where e.status = :status and e.createdAt < :before")
+    int deleteFailedCreatedBefore(@Param("status") OutboxStatus status, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,35 @@
+package org.ithub.orderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.orderservice.event.OrderPaymentRequestedEvent;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+// Быстрый путь асинхронного платежа: запрос уже сохранен в outbox вместе с заказом и арендован,
+// здесь он сразу отправляется в пул. Если пул переполнен или сервис упал, событие доставит relay
+// после истечения аренды
+@Slf4j
+@Service
+public class AsyncPaymentListener {
+    private final OutboxRelay outboxRelay;
+    private final ThreadPoolTaskExecutor paymentExecutor;
+
+    public AsyncPaymentListener(OutboxRelay outboxRelay,
+                                @Qualifier("paymentExecutor") ThreadPoolTaskExecutor paymentExecutor) {
+        this.outboxRelay = outboxRelay;
+        this.paymentExecutor = paymentExecutor;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderPaymentRequested(OrderPaymentRequestedEvent event) {
+        try {
+            paymentExecutor.execute(() -> outboxRelay.deliverNow(event.getOutboxEventId()));
+        } catch (TaskRejectedException e) {
+            log.warn("Payment pool is full, payment for order {} is left to the outbox relay", event.getOrderId());
+        }
+    }
+}
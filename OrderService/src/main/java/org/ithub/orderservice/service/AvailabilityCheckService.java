@@ -0,0 +1,143 @@
+package org.ithub.orderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.orderservice.dto.cart.CartItemDto;
+import org.ithub.orderservice.exception.ProductNotFoundException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+public class AvailabilityCheckService {
+    private final InventoryService inventoryService;
+    private final CircuitBreakerService circuitBreakerService;
+    private final ThreadPoolTaskExecutor executor;
+    private final Duration timeout;
+    private final Duration batchTimeout;
+
+    public AvailabilityCheckService(InventoryService inventoryService,
+                                    CircuitBreakerService circuitBreakerService,
+                                    @Qualifier("availabilityCheckExecutor") ThreadPoolTaskExecutor executor,
+                                    @Value("${order.availability-check.timeout:3s}") Duration timeout,
+                                    @Value("${order.availability-check.batch-timeout:1s}") Duration batchTimeout) {
+        this.inventoryService = inventoryService;
+        this.circuitBreakerService = circuitBreakerService;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.batchTimeout = batchTimeout;
+    }
+
+    // Проверяет наличие всех товаров корзины, бросает исключение для первого недоступного товара
+    public void ensureAvailable(List<CartItemDto> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        // Один товар может встречаться в корзине несколько раз, проверяем его один раз
+        Map<Long, CartItemDto> itemsByProduct = new LinkedHashMap<>();
+        items.forEach(item -> itemsByProduct.putIfAbsent(item.getProductId(), item));
+
+        // Пакетный запрос ограничен batch-timeout: если он упал или не успел, оставшееся до общего
+        // дедлайна время отдается параллельным проверкам, а не ожиданию медленного ответа
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletableFuture<Set<Long>> batch =
+                submit(() -> inventoryService.findUnavailableProducts(itemsByProduct.keySet()));
+        Set<Long> unavailableProducts;
+        try {
+            unavailableProducts = batch.get(Math.min(batchTimeout.toNanos(), timeout.toNanos()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ProductNotFoundException notFound) {
+                throw notFound;
+            }
+            log.warn("Batch availability check failed, falling back to parallel checks: {}",
+                    e.getCause().getMessage());
+            checkInParallel(itemsByProduct, deadline);
+            return;
+        } catch (TimeoutException e) {
+            // Запрос, еще не взятый пулом, не выполнится, а поздний ответ уже начатого будет отброшен
+            batch.cancel(false);
+            log.warn("Batch availability check exceeded {}, falling back to parallel checks", batchTimeout);
+            checkInParallel(itemsByProduct, deadline);
+            return;
+        } catch (InterruptedException e) {
+            batch.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Product availability check was interrupted");
+        }
+
+        for (CartItemDto item : itemsByProduct.values()) {
+            if (unavailableProducts.contains(item.getProductId())) {
+                throw new IllegalStateException("Product is not available: " + item.getProductName());
+            }
+        }
+    }
+
+    // Проверяет товары параллельно через Circuit Breaker с общим дедлайном на весь заказ
+    private void checkInParallel(Map<Long, CartItemDto> itemsByProduct, long deadline) {
+        CompletableFuture<CartItemDto> firstUnavailable = new CompletableFuture<>();
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+        try {
+            for (CartItemDto item : itemsByProduct.values()) {
+                checks.add(submit(() -> {
+                    if (!firstUnavailable.isDone()
+                            && !circuitBreakerService.isProductAvailable(item.getProductId())) {
+                        firstUnavailable.complete(item);
+                    }
+                    return true;
+                }));
+            }
+        } catch (IllegalStateException e) {
+            checks.forEach(check -> check.cancel(false));
+            throw e;
+        }
+        CompletableFuture<Void> allChecks = CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new));
+
+        try {
+            CompletableFuture.anyOf(allChecks, firstUnavailable)
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.error("Availability check for {} products exceeded {}", itemsByProduct.size(), timeout);
+            throw new IllegalStateException("Product availability check timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Product availability check was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Product availability check failed: " + e.getCause().getMessage());
+        } finally {
+            checks.forEach(check -> check.cancel(false));
+        }
+
+        if (firstUnavailable.isDone()) {
+            throw new IllegalStateException("Product is not available: " + firstUnavailable.join().getProductName());
+        }
+    }
+
+    // Пул не выполняет задачи в вызывающем потоке: при переполнении проверка отклоняется сразу,
+    // иначе она шла бы в потоке запроса без дедлайна
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Availability check pool is saturated: {}", e.getMessage());
+            throw new IllegalStateException("Product availability check is overloaded, try again later");
+        }
+    }
+}
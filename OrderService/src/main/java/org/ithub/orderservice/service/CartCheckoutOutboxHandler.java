@@ -0,0 +1,37 @@
+package org.ithub.orderservice.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.ithub.orderservice.dto.cart.CheckoutCompletionRequestDto;
+import org.ithub.orderservice.dto.cart.CheckoutLineDto;
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxTopic;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Очищает корзину, оформленную в заказ. Повторы безопасны: CartService игнорирует уже завершенное оформление
+@Component
+@RequiredArgsConstructor
+public class CartCheckoutOutboxHandler implements OutboxHandler {
+    private final CircuitBreakerService circuitBreakerService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public OutboxTopic topic() {
+        return OutboxTopic.CART_CHECKOUT;
+    }
+
+    // События, сохраненные до появления позиций в payload, завершают оформление без них
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        JsonNode payload = objectMapper.readTree(event.getPayload());
+        List<CheckoutLineDto> lines = payload.has("lines")
+                ? objectMapper.convertValue(payload.get("lines"), new TypeReference<List<CheckoutLineDto>>() { })
+                : List.of();
+        circuitBreakerService.completeCartCheckout(payload.get("userId").asLong(), payload.get("checkoutId").asText(),
+                new CheckoutCompletionRequestDto(lines));
+    }
+}
@@ -4,8 +4,11 @@ import feign.FeignException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.ithub.orderservice.client.CartClient;
-import org.ithub.orderservice.dto.cart.CartDto;
+import org.ithub.orderservice.dto.cart.CartCheckoutDto;
+import org.ithub.orderservice.dto.cart.CheckoutCompletionRequestDto;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Slf4j
 @Service
@@ -13,33 +16,50 @@ import org.springframework.stereotype.Service;
 public class CartManagementService {
     private final CartClient cartClient;
 
-    // Получает корзину пользователя
-    public CartDto getUserCart(Long userId) {
+    // Блокирует корзину для оформления: CartService возвращает снимок, позиции остаются в корзине.
+    // Корзина очищается событием outbox после фиксации заказа, а при откате блокировка снимается.
+    // Если снять блокировку не удалось, она истекает сама через cart.checkout.hold-ttl
+    public CartCheckoutDto checkoutUserCart(Long userId) {
+        CartCheckoutDto checkout;
         try {
-            log.info("Getting cart for user: {}", userId);
-            CartDto cart = cartClient.getCartByUserId(userId);
-
-            if (cart.getItems().isEmpty()) {
-                log.warn("Cart is empty for user: {}", userId);
-                throw new IllegalStateException("Cart is empty for user: " + userId);
-            }
-
-            return cart;
+            log.info("Checking out cart for user: {}", userId);
+            checkout = cartClient.checkout(userId);
+        } catch (FeignException.BadRequest e) {
+            log.warn("Cart is empty for user: {}", userId);
+            throw new IllegalStateException("Cart is empty for user: " + userId);
+        } catch (FeignException.Conflict e) {
+            log.warn("Cart of user {} is already being checked out", userId);
+            throw new IllegalStateException("Cart is already being checked out for user: " + userId);
         } catch (FeignException e) {
-            log.error("Error fetching cart for user {}: {}", userId, e.getMessage());
+            log.error("Error checking out cart for user {}: {}", userId, e.getMessage());
             throw new IllegalStateException("Failed to retrieve cart: " + e.getMessage());
         }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        releaseCheckout(userId, checkout.getCheckoutId());
+                    }
+                }
+            });
+        }
+        return checkout;
+    }
+
+    public void completeCheckout(Long userId, String checkoutId, CheckoutCompletionRequestDto request) {
+        cartClient.completeCheckout(userId, checkoutId, request);
+        log.info("Completed checkout {} for user {}", checkoutId, userId);
     }
 
-    // Очищает корзину пользователя
-    public void clearUserCart(Long userId) {
+    private void releaseCheckout(Long userId, String checkoutId) {
         try {
-            log.info("Clearing cart for user: {}", userId);
-            cartClient.clearCart(userId);
-            log.info("Cart cleared successfully for user: {}", userId);
+            cartClient.releaseCheckout(userId, checkoutId);
+            log.info("Released checkout {} for user {}", checkoutId, userId);
         } catch (Exception e) {
-            log.error("Failed to clear cart for user {}: {}", userId, e.getMessage());
-            // Логируем ошибку, но не прерываем выполнение, так как это может быть не критично
+            // Позиции остались в корзине, блокировка снимется по истечении срока
+            log.error("Failed to release checkout {} for user {}: {}", checkoutId, userId, e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -4,15 +4,17 @@ import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.ithub.orderservice.dto.OrderRequest;
-import org.ithub.orderservice.dto.cart.CartDto;
+import org.ithub.orderservice.dto.cart.CartCheckoutDto;
+import org.ithub.orderservice.dto.cart.CheckoutCompletionRequestDto;
+import org.ithub.orderservice.dto.catalog.StockCommitRequestDto;
+import org.ithub.orderservice.dto.catalog.StockRestockRequestDto;
 import org.ithub.orderservice.dto.payment.PaymentConstants;
 import org.ithub.orderservice.dto.payment.PaymentResponseDto;
 import org.ithub.orderservice.exception.PaymentProcessingException;
 import org.ithub.orderservice.model.Order;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.util.Collections;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -20,33 +22,19 @@ import java.util.Collections;
 public class CircuitBreakerService {
     private final CartManagementService cartService;
     private final InventoryService inventoryService;
+    private final StockReservationService stockReservationService;
     private final PaymentProcessingService paymentService;
     private final NotificationService notificationService;
 
-    @CircuitBreaker(name = "cartService", fallbackMethod = "getUserCartFallback")
-    public CartDto getUserCart(Long userId) {
-        return cartService.getUserCart(userId);
+    @CircuitBreaker(name = "cartService", fallbackMethod = "checkoutUserCartFallback")
+    public CartCheckoutDto checkoutUserCart(Long userId) {
+        return cartService.checkoutUserCart(userId);
     }
 
-    public CartDto getUserCartFallback(Long userId, Exception e) {
-        log.error("Circuit breaker triggered when getting user cart for user {}: {}", userId, e.getMessage());
-        // Возвращаем пустую корзину в качестве fallback
-        CartDto emptyCart = new CartDto();
-        emptyCart.setUserId(userId);
-        emptyCart.setUsername("Unknown");
-        emptyCart.setTotalAmount(BigDecimal.valueOf(0.0));
-        emptyCart.setItems(Collections.emptyList());
-        return emptyCart;
-    }
-
-    @CircuitBreaker(name = "cartService", fallbackMethod = "clearUserCartFallback")
-    public void clearUserCart(Long userId) {
-        cartService.clearUserCart(userId);
-    }
-
-    public void clearUserCartFallback(Long userId, Exception e) {
-        log.error("Circuit breaker triggered when clearing user cart for user {}: {}", userId, e.getMessage());
-        // В случае ошибки продолжаем процесс создания заказа
+    public CartCheckoutDto checkoutUserCartFallback(Long userId, Exception e) {
+        log.error("Circuit breaker triggered when checking out cart for user {}: {}", userId, e.getMessage());
+        // Без снимка корзины заказ создать нельзя
+        throw new IllegalStateException("Failed to check out cart: " + e.getMessage());
     }
 
     @CircuitBreaker(name = "inventoryService", fallbackMethod = "isProductAvailableFallback")
@@ -97,15 +85,27 @@ public class CircuitBreakerService {
         throw new PaymentProcessingException("Payment service is currently unavailable. Refund will be processed later.");
     }
 
-    @CircuitBreaker(name = "notificationService", fallbackMethod = "sendOrderNotificationFallback")
-    public void sendOrderNotification(Order order, String eventType) {
-        notificationService.sendOrderNotification(order, eventType);
+    // Без fallback: при ошибке событие остается в outbox и будет отправлено повторно
+    @CircuitBreaker(name = "cartService")
+    public void completeCartCheckout(Long userId, String checkoutId, CheckoutCompletionRequestDto request) {
+        cartService.completeCheckout(userId, checkoutId, request);
+    }
+
+    // Без fallback: при ошибке событие остается в outbox и будет отправлено повторно
+    @CircuitBreaker(name = "inventoryService")
+    public void commitReservation(StockCommitRequestDto request) {
+        stockReservationService.commit(request);
+    }
+
+    // Без fallback: при ошибке событие остается в outbox и будет отправлено повторно
+    @CircuitBreaker(name = "inventoryService")
+    public void restock(StockRestockRequestDto request) {
+        stockReservationService.restock(request);
     }
 
-    public void sendOrderNotificationFallback(Order order, String eventType, Exception e) {
-        log.error("Circuit breaker triggered when sending notification for order {}, event {}: {}",
-                order.getId(), eventType, e.getMessage());
-        // Вместо блокировки процесса, просто логируем ошибку
-        log.warn("Notification will be sent asynchronously for order {}, event {}", order.getId(), eventType);
+    // Без fallback: при ошибке событие остается в outbox и будет отправлено повторно
+    @CircuitBreaker(name = "notificationService")
+    public void sendOrderNotification(Map<String, Object> notificationDetails) {
+        notificationService.sendOrderNotification(notificationDetails);
     }
 }
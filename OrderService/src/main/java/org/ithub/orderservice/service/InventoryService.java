@@ -1,36 +1,151 @@
 package org.ithub.orderservice.service;
 
 import feign.FeignException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.feign.ConcurrencyLimitExceededException;
+import org.ithub.feign.HedgedRequestExecutor;
+import org.ithub.orderservice.cache.ProductCache;
 import org.ithub.orderservice.client.CatalogClient;
 import org.ithub.orderservice.dto.catalog.ProductDto;
 import org.ithub.orderservice.exception.ProductNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class InventoryService {
     private final CatalogClient catalogClient;
+    private final ProductCache productCache;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+    private final Duration productMaxAge;
+    private final Duration availabilityMaxAge;
+
+    public InventoryService(CatalogClient catalogClient,
+                            ProductCache productCache,
+                            HedgedRequestExecutor hedgedRequestExecutor,
+                            @Value("${order.product-cache.ttl:10m}") Duration productMaxAge,
+                            @Value("${order.product-cache.availability-max-age:30s}") Duration availabilityMaxAge) {
+        this.catalogClient = catalogClient;
+        this.productCache = productCache;
+        this.hedgedRequestExecutor = hedgedRequestExecutor;
+        this.productMaxAge = productMaxAge;
+        this.availabilityMaxAge = availabilityMaxAge;
+    }
 
     // Получает информацию о продукте по его ID
     public ProductDto getProductInfo(Long productId) {
+        return getProductInfo(productId, productMaxAge);
+    }
+
+    // Получает информацию о нескольких продуктах, недостающие в кэше запрашиваются одним запросом к каталогу
+    public Map<Long, ProductDto> getProductsInfo(Collection<Long> productIds) {
+        return getProductsInfo(productIds, productMaxAge);
+    }
+
+    // Проверяет доступность продукта; для наличия используется более строгая граница свежести кэша
+    public boolean isProductAvailable(Long productId) {
+        ProductDto product = getProductInfo(productId, availabilityMaxAge);
+        return product.isAvailable();
+    }
+
+    // Возвращает ID недоступных продуктов из переданного списка
+    public Set<Long> findUnavailableProducts(Collection<Long> productIds) {
+        Map<Long, ProductDto> products = getProductsInfo(productIds, availabilityMaxAge);
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                log.error("Product not found: {}", productId);
+                throw new ProductNotFoundException("Product not found: " + productId);
+            }
+        }
+
+        return products.values().stream()
+                .filter(product -> !product.isAvailable())
+                .map(ProductDto::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private ProductDto getProductInfo(Long productId, Duration maxAge) {
+        ProductCache.Entry cached = productCache.getIfFresh(productId, maxAge);
+        if (cached != null) {
+            if (cached.isNotFound()) {
+                throw new ProductNotFoundException("Product not found: " + productId);
+            }
+            return cached.product();
+        }
+
+        // Устаревшую запись перепроверяем условным запросом, чтобы не скачивать товар заново
+        ProductCache.Entry stale = productCache.getIfPresent(productId);
+        String eTag = stale != null && !stale.isNotFound() ? stale.eTag() : null;
         try {
             log.info("Getting product information for ID: {}", productId);
-            return catalogClient.getProductById(productId);
+            ResponseEntity<ProductDto> response = hedgedRequestExecutor.execute("catalog.getProductById",
+                    () -> catalogClient.getProductById(productId, eTag));
+            ProductDto product = response.getBody();
+            productCache.put(product, response.getHeaders().getETag());
+            return product;
         } catch (FeignException.NotFound e) {
             log.error("Product not found: {}", productId);
+            productCache.putNotFound(productId);
             throw new ProductNotFoundException("Product not found: " + productId);
+        } catch (FeignException e) {
+            if (e.status() == HttpStatus.NOT_MODIFIED.value() && eTag != null) {
+                productCache.revalidated(stale);
+                return stale.product();
+            }
+            log.error("Error retrieving product {}: {}", productId, e.getMessage());
+            throw new RuntimeException("Failed to retrieve product information: " + e.getMessage());
+        } catch (ConcurrencyLimitExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error retrieving product {}: {}", productId, e.getMessage());
             throw new RuntimeException("Failed to retrieve product information: " + e.getMessage());
         }
     }
 
-    // Проверяет доступность продукта
-    public boolean isProductAvailable(Long productId) {
-        ProductDto product = getProductInfo(productId);
-        return product.isAvailable();
+    private Map<Long, ProductDto> getProductsInfo(Collection<Long> productIds, Duration maxAge) {
+        Map<Long, ProductDto> products = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long productId : productIds) {
+            ProductCache.Entry cached = productCache.getIfFresh(productId, maxAge);
+            if (cached == null) {
+                missing.add(productId);
+            } else if (!cached.isNotFound()) {
+                products.put(productId, cached.product());
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return products;
+        }
+
+        try {
+            log.info("Getting product information for IDs: {}", missing);
+            for (ProductDto product : catalogClient.getProductsByIds(missing)) {
+                productCache.putKeepingETag(product);
+                products.put(product.getId(), product);
+            }
+        } catch (ConcurrencyLimitExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error retrieving products {}: {}", missing, e.getMessage());
+            throw new RuntimeException("Failed to retrieve product information: " + e.getMessage());
+        }
+
+        // Товары, которых нет в ответе каталога, запоминаем как отсутствующие
+        missing.stream()
+                .filter(productId -> !products.containsKey(productId))
+                .forEach(productCache::putNotFound);
+        return products;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package org.ithub.orderservice.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxTopic;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+public class NotificationOutboxHandler implements OutboxHandler {
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    private final CircuitBreakerService circuitBreakerService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public OutboxTopic topic() {
+        return OutboxTopic.NOTIFICATION;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        circuitBreakerService.sendOrderNotification(objectMapper.readValue(event.getPayload(), PAYLOAD_TYPE));
+    }
+}
@@ -11,8 +11,8 @@ import java.util.Map;
 @Service
 public class NotificationService {
 
-    // Отправляет уведомление о событии с заказом
-    public void sendOrderNotification(Order order, String eventType) {
+    // Формирует данные уведомления о событии с заказом
+    public Map<String, Object> buildOrderNotification(Order order, String eventType) {
         Map<String, Object> notificationDetails = new HashMap<>();
         notificationDetails.put("orderId", order.getId());
         notificationDetails.put("userId", order.getUserId());
@@ -20,10 +20,15 @@ public class NotificationService {
         notificationDetails.put("orderStatus", order.getStatus());
         notificationDetails.put("totalAmount", order.getTotalAmount());
         notificationDetails.put("eventType", eventType);
+        return notificationDetails;
+    }
 
+    // Отправляет уведомление о событии с заказом
+    public void sendOrderNotification(Map<String, Object> notificationDetails) {
         // Вместо вызова внешнего сервиса просто логируем информацию
         log.info("Order notification: Type: {}, Order ID: {}, Status: {}",
-                eventType, order.getId(), order.getStatus());
+                notificationDetails.get("eventType"), notificationDetails.get("orderId"),
+                notificationDetails.get("orderStatus"));
 
         // В реальной системе здесь можно будет подключить NotificationClient,
         // когда он будет доступен
@@ -37,4 +42,4 @@ public class NotificationService {
 
         // В реальной системе здесь можно будет отправлять уведомления администраторам или в систему мониторинга
     }
-}
\ No newline at end of file
+}
@@ -1,47 +1,81 @@
 package org.ithub.orderservice.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.money.Money;
 import org.ithub.orderservice.dto.OrderDto;
 import org.ithub.orderservice.dto.OrderItemDto;
 import org.ithub.orderservice.dto.OrderRequest;
+import org.ithub.orderservice.dto.OrderSliceDto;
 import org.ithub.orderservice.dto.OrderStatusUpdateRequest;
+import org.ithub.orderservice.dto.cart.CartCheckoutDto;
 import org.ithub.orderservice.dto.cart.CartDto;
 import org.ithub.orderservice.dto.payment.PaymentConstants;
 import org.ithub.orderservice.dto.payment.PaymentResponseDto;
+import org.ithub.orderservice.event.OrderPaymentRequestedEvent;
 import org.ithub.orderservice.exception.InvalidOrderStateException;
 import org.ithub.orderservice.exception.OrderNotFoundException;
 import org.ithub.orderservice.exception.PaymentProcessingException;
 import org.ithub.orderservice.model.Order;
 import org.ithub.orderservice.model.OrderItem;
 import org.ithub.orderservice.model.OrderStatus;
+import org.ithub.orderservice.model.OutboxEvent;
 import org.ithub.orderservice.model.PaymentMethod;
 import org.ithub.orderservice.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class OrderService {
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
     private final OrderRepository orderRepository;
-    private final InventoryService inventoryService;
+    private final AvailabilityCheckService availabilityCheckService;
+    private final StockReservationService stockReservationService;
     private final PaymentProcessingService paymentService;
     private final OrderStatusService statusService;
     private final CircuitBreakerService circuitBreakerService;
+    private final OutboxService outboxService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    // В асинхронном режиме платеж обрабатывается после фиксации транзакции создания заказа
+    @Value("${order.checkout.async-payment:false}")
+    private boolean asyncPayment;
 
+    // idempotencyKey сохраняется в заказе в той же транзакции, может быть null
     @Transactional
-    public OrderDto createOrder(OrderRequest orderRequest) {
+    public OrderDto createOrder(OrderRequest orderRequest, String idempotencyKey) {
         log.info("Creating new order for user: {}", orderRequest.getUserId());
 
-        // Получаем корзину пользователя с применением Circuit Breaker
-        CartDto cart = circuitBreakerService.getUserCart(orderRequest.getUserId());
+        // Блокируем корзину пользователя и получаем ее снимок. Корзина очищается после фиксации заказа,
+        // а при откате транзакции блокировка снимается
+        CartCheckoutDto checkout = circuitBreakerService.checkoutUserCart(orderRequest.getUserId());
+        CartDto cart = checkout.getCart();
 
         // Создаем новый заказ
         Order order = new Order();
@@ -54,27 +88,87 @@ public class OrderService {
         order.setBillingAddress(orderRequest.getBillingAddress());
         order.setPaymentMethod(orderRequest.getPaymentMethod());
         order.setNotes(orderRequest.getNotes());
-        order.setTotalAmount(cart.getTotalAmount());
+        order.setTotalAmount(Money.of(cart.getTotalAmount()));
+        order.setIdempotencyKey(idempotencyKey);
 
-        // Добавляем товары в заказ и проверяем их наличие
-        addItemsToOrder(order, cart);
+        // Добавляем товары в заказ, проверяем их наличие и резервируем
+        String reservationId = addItemsToOrder(order, cart);
 
         // Сохраняем заказ
         Order savedOrder = orderRepository.save(order);
         log.info("Created order with ID: {}", savedOrder.getId());
 
-        // Очищаем корзину пользователя с применением Circuit Breaker
-        circuitBreakerService.clearUserCart(orderRequest.getUserId());
-
-        // Обрабатываем платеж если не наличными
-        processOrderPayment(savedOrder, orderRequest);
+        if (asyncPayment && orderRequest.getPaymentMethod() != PaymentMethod.CASH) {
+            // Заказ остается в статусе CREATED; запрос на платеж сохраняется в outbox и
+            // обрабатывается в отдельном пуле после фиксации транзакции
+            OutboxEvent paymentEvent = outboxService.enqueuePaymentRequest(savedOrder, orderRequest);
+            eventPublisher.publishEvent(new OrderPaymentRequestedEvent(savedOrder.getId(), paymentEvent.getId()));
+        } else {
+            // Обрабатываем платеж если не наличными
+            processOrderPayment(savedOrder, orderRequest);
+        }
 
-        // Отправляем уведомление с применением Circuit Breaker
-        circuitBreakerService.sendOrderNotification(savedOrder, "ORDER_CREATED");
+        // Сохраняем подтверждение резерва, уведомление и очистку корзины в outbox,
+        // отправка выполняется фоновым relay
+        outboxService.enqueueStockCommit(savedOrder, reservationId);
+        outboxService.enqueueCartCheckoutCompletion(savedOrder, checkout.getCheckoutId());
+        outboxService.enqueueOrderNotification(savedOrder, "ORDER_CREATED");
 
         return convertToDto(savedOrder);
     }
 
+    public boolean isAsyncPayment() {
+        return asyncPayment;
+    }
+
+    // Применяет результат асинхронно обработанного платежа к заказу
+    @Transactional
+    public void applyPaymentResult(Long orderId, PaymentResponseDto paymentResponse) {
+        Order order = findOrderById(orderId);
+        boolean paymentCompleted = paymentResponse != null
+                && PaymentConstants.PAYMENT_STATUS_COMPLETED.equals(paymentResponse.getStatus());
+
+        if (paymentResponse != null && order.getPaymentId() == null) {
+            order.setPaymentId(paymentResponse.getPaymentId());
+        }
+
+        if (order.getStatus() != OrderStatus.CREATED) {
+            // Заказ успели отменить, пока обрабатывался платеж
+            log.warn("Order {} moved to {} while payment was processing", orderId, order.getStatus());
+            if (paymentCompleted && order.getStatus() == OrderStatus.CANCELLED) {
+                try {
+                    paymentService.refundPayment(paymentResponse.getPaymentId(), "Order cancelled during payment");
+                } catch (Exception e) {
+                    log.error("Error refunding payment for cancelled order {}: {}", orderId, e.getMessage());
+                }
+            }
+            orderRepository.save(order);
+            return;
+        }
+
+        if (paymentCompleted) {
+            order.setStatus(OrderStatus.PAID);
+            log.info("Payment completed for order: {}, transaction ID: {}",
+                    orderId, paymentResponse.getTransactionId());
+        } else {
+            // Платеж не прошел, заказ ожидает повторной оплаты
+            order.setStatus(OrderStatus.PENDING);
+            log.warn("Payment not completed for order: {}, status: {}",
+                    orderId, paymentResponse != null ? paymentResponse.getStatus() : null);
+        }
+
+        Order savedOrder = orderRepository.save(order);
+
+        // Сохраняем уведомление в outbox, отправка выполняется фоновым relay
+        outboxService.enqueueOrderNotification(savedOrder, "STATUS_UPDATED");
+    }
+
+    // Заказ, созданный запросом с этим ключом идемпотентности
+    @Transactional(readOnly = true)
+    public Optional<OrderDto> findByIdempotencyKey(String idempotencyKey) {
+        return orderRepository.findWithItemsByIdempotencyKey(idempotencyKey).map(this::convertToDto);
+    }
+
     @Transactional(readOnly = true)
     public OrderDto getOrderById(Long orderId) {
         log.info("Fetching order with ID: {}", orderId);
@@ -85,7 +179,7 @@ public class OrderService {
     @Transactional(readOnly = true)
     public List<OrderDto> getOrdersByUserId(Long userId) {
         log.info("Fetching orders for user: {}", userId);
-        List<Order> orders = orderRepository.findByUserId(userId);
+        List<Order> orders = orderRepository.findWithItemsByUserId(userId);
         return orders.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
@@ -94,8 +188,37 @@ public class OrderService {
     @Transactional(readOnly = true)
     public Page<OrderDto> getOrdersByStatus(OrderStatus status, Pageable pageable) {
         log.info("Fetching orders with status: {}", status);
-        Page<Order> orderPage = orderRepository.findByStatus(status, pageable);
-        return orderPage.map(this::convertToDto);
+        Page<Long> idPage = orderRepository.findIdsByStatus(status, pageable);
+        Map<Long, Order> ordersById = findOrdersWithItems(idPage.getContent());
+        return idPage.map(id -> convertToDto(ordersById.get(id)));
+    }
+
+    @Transactional(readOnly = true)
+    public OrderSliceDto getOrdersByStatusAfter(OrderStatus status, String cursor, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        log.info("Fetching orders with status: {} after cursor: {}", status, cursor);
+
+        // Запрашиваем на одну запись больше, чтобы узнать о наличии следующей страницы
+        Limit limit = Limit.of(size + 1);
+        List<Long> ids;
+        if (cursor == null || cursor.isBlank()) {
+            ids = orderRepository.findIdsByStatusFirstPage(status, limit);
+        } else {
+            OrderCursor position = decodeCursor(cursor);
+            ids = orderRepository.findIdsByStatusAfter(status, position.orderDate(), position.id(), limit);
+        }
+
+        boolean hasNext = ids.size() > size;
+        List<Long> pageIds = hasNext ? ids.subList(0, size) : ids;
+        Map<Long, Order> ordersById = findOrdersWithItems(pageIds);
+        List<OrderDto> content = pageIds.stream()
+                .map(id -> convertToDto(ordersById.get(id)))
+                .collect(Collectors.toList());
+
+        String nextCursor = hasNext ? encodeCursor(ordersById.get(pageIds.get(pageIds.size() - 1))) : null;
+        return new OrderSliceDto(content, content.size(), hasNext, nextCursor);
     }
 
     @Transactional
@@ -125,8 +248,13 @@ public class OrderService {
         Order savedOrder = orderRepository.save(order);
         log.info("Updated order status from {} to {}", oldStatus, savedOrder.getStatus());
 
-        // Отправляем уведомление с применением Circuit Breaker
-        circuitBreakerService.sendOrderNotification(savedOrder, "STATUS_UPDATED");
+        // Товары отмененного или возвращенного заказа возвращаются на склад через outbox
+        if (savedOrder.getStatus() == OrderStatus.CANCELLED || savedOrder.getStatus() == OrderStatus.REFUNDED) {
+            outboxService.enqueueRestock(savedOrder);
+        }
+
+        // Сохраняем уведомление в outbox, отправка выполняется фоновым relay
+        outboxService.enqueueOrderNotification(savedOrder, "STATUS_UPDATED");
 
         return convertToDto(savedOrder);
     }
@@ -156,40 +284,108 @@ public class OrderService {
         orderRepository.save(order);
         log.info("Cancelled order ID: {} (previous status: {})", orderId, oldStatus);
 
-        // Отправляем уведомление с применением Circuit Breaker
-        circuitBreakerService.sendOrderNotification(order, "ORDER_CANCELLED");
+        // Сохраняем возврат товаров на склад и уведомление в outbox, отправка выполняется фоновым relay
+        outboxService.enqueueRestock(order);
+        outboxService.enqueueOrderNotification(order, "ORDER_CANCELLED");
     }
 
     @Transactional(readOnly = true)
     public List<OrderDto> getOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
         log.info("Fetching orders between {} and {}", startDate, endDate);
-        List<Order> orders = orderRepository.findByOrderDateBetween(startDate, endDate);
+        List<Order> orders = orderRepository.findWithItemsByOrderDateBetween(startDate, endDate);
         return orders.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
     }
 
+    // Потоково выгружает заказы за период в формате NDJSON, не загружая весь период в память
+    @Transactional(readOnly = true)
+    public void exportOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate, OutputStream out)
+            throws IOException {
+        log.info("Exporting orders between {} and {}", startDate, endDate);
+        List<Order> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        try (Stream<Order> orders = orderRepository.streamByOrderDateBetween(startDate, endDate)) {
+            Iterator<Order> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == EXPORT_CHUNK_SIZE) {
+                    writeExportChunk(chunk, out);
+                }
+            }
+            writeExportChunk(chunk, out);
+        }
+    }
+
     // Вспомогательные методы
     private Order findOrderById(Long orderId) {
         return orderRepository.findById(orderId)
                 .orElseThrow(() -> new OrderNotFoundException("Order not found with ID: " + orderId));
     }
 
-    private void addItemsToOrder(Order order, CartDto cart) {
-        for (var cartItem : cart.getItems()) {
-            // Проверяем наличие товара
-            if (!inventoryService.isProductAvailable(cartItem.getProductId())) {
-                throw new IllegalStateException("Product is not available: " + cartItem.getProductName());
-            }
+    // Курсор кодирует позицию последнего заказа страницы: orderDate и id
+    private record OrderCursor(LocalDateTime orderDate, Long id) {
+    }
 
+    private String encodeCursor(Order order) {
+        String position = order.getOrderDate() + "|" + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private OrderCursor decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf('|');
+            return new OrderCursor(
+                    LocalDateTime.parse(position.substring(0, separator)),
+                    Long.valueOf(position.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private void writeExportChunk(List<Order> chunk, OutputStream out) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        // Позиции всех заказов пачки загружаем одним запросом
+        Map<Long, Order> ordersById = findOrdersWithItems(chunk.stream().map(Order::getId).toList());
+        for (Order order : chunk) {
+            out.write(objectMapper.writeValueAsBytes(convertToDto(ordersById.get(order.getId()))));
+            out.write('\n');
+        }
+        out.flush();
+        chunk.clear();
+
+        // Отсоединяем выгруженные заказы, чтобы кэш первого уровня не рос вместе с периодом
+        entityManager.clear();
+    }
+
+    // Загружает заказы вместе с позициями одним запросом
+    private Map<Long, Order> findOrdersWithItems(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Map.of();
+        }
+        return orderRepository.findWithItemsByIdIn(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+    }
+
+    private String addItemsToOrder(Order order, CartDto cart) {
+        // Проверяем наличие всех товаров корзины
+        availabilityCheckService.ensureAvailable(cart.getItems());
+        // Резервируем количество на складе, чтобы параллельные заказы не продали один товар дважды
+        String reservationId = stockReservationService.reserveForOrder(cart.getItems());
+
+        for (var cartItem : cart.getItems()) {
             // Добавляем товар в заказ
             OrderItem orderItem = new OrderItem();
             orderItem.setProductId(cartItem.getProductId());
             orderItem.setProductName(cartItem.getProductName());
-            orderItem.setPrice(cartItem.getPrice());
+            orderItem.setPrice(Money.of(cartItem.getPrice()));
             orderItem.setQuantity(cartItem.getQuantity());
             order.addItem(orderItem);
         }
+        return reservationId;
     }
 
     private void processOrderPayment(Order order, OrderRequest orderRequest) {
@@ -247,7 +443,7 @@ public class OrderService {
         dto.setUsername(order.getUsername());
         dto.setOrderDate(order.getOrderDate());
         dto.setStatus(order.getStatus());
-        dto.setTotalAmount(order.getTotalAmount());
+        dto.setTotalAmount(order.getTotalAmount().toBigDecimal());
         dto.setShippingAddress(order.getShippingAddress());
         dto.setBillingAddress(order.getBillingAddress());
         dto.setPaymentMethod(order.getPaymentMethod());
@@ -268,9 +464,9 @@ public class OrderService {
         dto.setId(item.getId());
         dto.setProductId(item.getProductId());
         dto.setProductName(item.getProductName());
-        dto.setPrice(item.getPrice());
+        dto.setPrice(item.getPrice().toBigDecimal());
         dto.setQuantity(item.getQuantity());
-        dto.setSubtotal(item.getSubtotal());
+        dto.setSubtotal(item.getSubtotal().toBigDecimal());
 
         return dto;
     }
@@ -0,0 +1,16 @@
+package org.ithub.orderservice.service;
+
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxTopic;
+
+// Доставляет события одного топика outbox. Исключение означает, что доставку нужно повторить
+public interface OutboxHandler {
+
+    OutboxTopic topic();
+
+    void handle(OutboxEvent event) throws Exception;
+
+    // Вызывается, когда попытки доставки исчерпаны: обработчик может стереть из события чувствительные данные
+    default void discard(OutboxEvent event) {
+    }
+}
@@ -0,0 +1,217 @@
+package org.ithub.orderservice.service;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxStatus;
+import org.ithub.orderservice.model.OutboxTopic;
+import org.ithub.orderservice.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+public class OutboxRelay {
+    private final OutboxEventRepository outboxRepository;
+    private final Map<OutboxTopic, OutboxHandler> handlers = new EnumMap<>(OutboxTopic.class);
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retention;
+    private final Duration failedRetention;
+    private final Duration claimLease;
+    private final Duration breakerOpenDelay;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter deliveredCounter;
+    private final Counter failedAttemptsCounter;
+    private final Counter deadCounter;
+    private final Timer deliveryLag;
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong oldestPendingAgeSeconds = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    public OutboxRelay(OutboxEventRepository outboxRepository,
+                       List<OutboxHandler> handlers,
+                       MeterRegistry meterRegistry,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${order.outbox.batch-size:100}") int batchSize,
+                       @Value("${order.outbox.max-attempts:10}") int maxAttempts,
+                       @Value("${order.outbox.retention:7d}") Duration retention,
+                       @Value("${order.outbox.failed-retention:30d}") Duration failedRetention,
+                       @Value("${order.outbox.claim-lease:2m}") Duration claimLease,
+                       @Value("${order.outbox.breaker-open-delay:5s}") Duration breakerOpenDelay) {
+        this.outboxRepository = outboxRepository;
+        handlers.forEach(handler -> this.handlers.put(handler.topic(), handler));
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retention = retention;
+        this.failedRetention = failedRetention;
+        this.claimLease = claimLease;
+        this.breakerOpenDelay = breakerOpenDelay;
+        this.transactionTemplate = transactionTemplate;
+
+        this.deliveredCounter = meterRegistry.counter("order.outbox.delivered");
+        this.failedAttemptsCounter = meterRegistry.counter("order.outbox.failed.attempts");
+        this.deadCounter = meterRegistry.counter("order.outbox.dead");
+        this.deliveryLag = Timer.builder("order.outbox.lag")
+                .description("Время от записи события в outbox до его доставки")
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.pending", pendingEvents, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.oldest.pending.age.seconds", oldestPendingAgeSeconds, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("order.outbox.failed", failedEvents, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    // Отправляет накопившиеся события пачками. События забираются с арендой в короткой транзакции,
+    // доставка выполняется вне транзакции, чтобы не держать соединение с БД на время вызовов.
+    // Перед доставкой каждого события аренда продлевается, поэтому время доставки всей пачки не ограничено арендой
+    @Scheduled(fixedDelayString = "${order.outbox.relay-interval:1000}")
+    public void relay() {
+        for (OutboxEvent event : claimBatch()) {
+            deliver(event);
+        }
+
+        updateBacklogGauges();
+    }
+
+    // Доставляет событие, которое вызывающий экземпляр арендовал при создании
+    public void deliverNow(Long eventId) {
+        outboxRepository.findById(eventId)
+                .filter(event -> event.getStatus() == OutboxStatus.PENDING)
+                .ifPresent(this::deliver);
+    }
+
+    // Возвращает события с исчерпанными попытками в очередь; orderId == null - все заказы
+    public int redriveFailed(Long orderId) {
+        LocalDateTime now = LocalDateTime.now();
+        int redriven = orderId == null
+                ? outboxRepository.redriveFailed(now)
+                : outboxRepository.redriveFailedForOrder(orderId, now);
+        log.info("Re-driven {} failed outbox events{}", redriven, orderId == null ? "" : " for order " + orderId);
+        return redriven;
+    }
+
+    // Удаляет давно доставленные события и давно заброшенные события с исчерпанными попытками
+    @Scheduled(fixedDelayString = "${order.outbox.cleanup-interval:3600000}")
+    public void purgeDelivered() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = outboxRepository.deleteSentBefore(OutboxStatus.SENT, now.minus(retention));
+        if (deleted > 0) {
+            log.info("Purged {} delivered outbox events", deleted);
+        }
+        int deletedFailed = outboxRepository.deleteFailedCreatedBefore(OutboxStatus.FAILED, now.minus(failedRetention));
+        if (deletedFailed > 0) {
+            log.info("Purged {} failed outbox events", deletedFailed);
+        }
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> batch = outboxRepository.lockDueEvents(now, batchSize);
+            batch.forEach(event -> event.setClaimedUntil(leaseFrom(now)));
+            return batch;
+        });
+    }
+
+    private void deliver(OutboxEvent event) {
+        if (!renewClaim(event)) {
+            log.debug("Outbox event {} was re-claimed by another instance, skipping", event.getId());
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        event.setClaimedUntil(null);
+        OutboxHandler handler = handlers.get(event.getTopic());
+        try {
+            if (handler == null) {
+                throw new IllegalStateException("No outbox handler for topic " + event.getTopic());
+            }
+            handler.handle(event);
+
+            event.setStatus(OutboxStatus.SENT);
+            event.setSentAt(now);
+            outboxRepository.save(event);
+            deliveredCounter.increment();
+            deliveryLag.record(Duration.between(event.getCreatedAt(), now));
+        } catch (CallNotPermittedException e) {
+            // Открытый Circuit Breaker - не ошибка доставки, попытка не засчитывается
+            event.setNextAttemptAt(now.plus(breakerOpenDelay));
+            outboxRepository.save(event);
+            log.debug("Circuit breaker open, postponing {} event for order {}", event.getEventType(), event.getOrderId());
+        } catch (Exception e) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setLastError(truncate(e.getMessage()));
+            failedAttemptsCounter.increment();
+
+            if (event.getAttempts() >= maxAttempts) {
+                // Более поздние события заказа не отправляются, пока событие не запущено повторно
+                event.setStatus(OutboxStatus.FAILED);
+                if (handler != null) {
+                    handler.discard(event);
+                }
+                deadCounter.increment();
+                log.error("Giving up on {} event for order {} after {} attempts: {}",
+                        event.getEventType(), event.getOrderId(), event.getAttempts(), e.getMessage());
+            } else {
+                event.setNextAttemptAt(now.plus(backoff(event.getAttempts())));
+                log.warn("Failed to deliver {} event for order {} (attempt {}), retry at {}: {}",
+                        event.getEventType(), event.getOrderId(), event.getAttempts(),
+                        event.getNextAttemptAt(), e.getMessage());
+            }
+            outboxRepository.save(event);
+        }
+    }
+
+    // Продлевает аренду события, только если ее никто не перехватил: пока события пачки ждали своей очереди,
+    // аренда могла истечь и событие могло уйти другому экземпляру
+    private boolean renewClaim(OutboxEvent event) {
+        LocalDateTime renewedUntil = leaseFrom(LocalDateTime.now());
+        if (outboxRepository.renewClaim(event.getId(), event.getClaimedUntil(), renewedUntil) == 0) {
+            return false;
+        }
+        event.setClaimedUntil(renewedUntil);
+        return true;
+    }
+
+    // Аренда сравнивается с сохраненным значением, поэтому точность не должна превышать точность столбца
+    private LocalDateTime leaseFrom(LocalDateTime now) {
+        return now.plus(claimLease).truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private void updateBacklogGauges() {
+        pendingEvents.set(outboxRepository.countByStatus(OutboxStatus.PENDING));
+        failedEvents.set(outboxRepository.countByStatus(OutboxStatus.FAILED));
+        oldestPendingAgeSeconds.set(outboxRepository.findFirstByStatusOrderByIdAsc(OutboxStatus.PENDING)
+                .map(event -> Duration.between(event.getCreatedAt(), LocalDateTime.now()).toSeconds())
+                .orElse(0L));
+    }
+
+    // Экспоненциальная задержка между попытками: 1с, 2с, 4с ... но не более 5 минут
+    private Duration backoff(int attempts) {
+        long seconds = 1L << Math.min(attempts - 1, 8);
+        return Duration.ofSeconds(Math.min(seconds, 300));
+    }
+
+    private String truncate(String message) {
+        if (message == null || message.length() <= 1000) {
+            return message;
+        }
+        return message.substring(0, 1000);
+    }
+}
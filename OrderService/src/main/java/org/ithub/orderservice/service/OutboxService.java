@@ -0,0 +1,118 @@
+package org.ithub.orderservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.orderservice.cache.CardVerificationCache;
+import org.ithub.orderservice.dto.OrderRequest;
+import org.ithub.orderservice.dto.cart.CheckoutLineDto;
+import org.ithub.orderservice.dto.catalog.StockCommitRequestDto;
+import org.ithub.orderservice.dto.catalog.StockLineDto;
+import org.ithub.orderservice.dto.catalog.StockRestockRequestDto;
+import org.ithub.orderservice.dto.payment.PaymentDetailsPayload;
+import org.ithub.orderservice.model.Order;
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxStatus;
+import org.ithub.orderservice.model.OutboxTopic;
+import org.ithub.orderservice.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    private final OutboxEventRepository outboxRepository;
+    private final NotificationService notificationService;
+    private final ObjectMapper objectMapper;
+    private final PaymentDataCipher paymentDataCipher;
+    private final CardVerificationCache cardVerificationCache;
+
+    @Value("${order.outbox.claim-lease:2m}")
+    private Duration claimLease;
+
+    // Сохраняет уведомление в outbox в той же транзакции, что и изменение заказа
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueOrderNotification(Order order, String eventType) {
+        enqueue(order.getId(), OutboxTopic.NOTIFICATION, eventType,
+                notificationService.buildOrderNotification(order, eventType), null);
+    }
+
+    // Сохраняет запрос на платеж. Событие сразу арендовано вызывающим экземпляром: он обработает его
+    // после фиксации транзакции, а relay заберет событие, только если аренда истечет.
+    // В базу попадают только реквизиты с зашифрованным номером карты, CVV остается в памяти
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent enqueuePaymentRequest(Order order, OrderRequest orderRequest) {
+        PaymentDetailsPayload details = PaymentDetailsPayload.builder()
+                .encryptedCardNumber(paymentDataCipher.encrypt(orderRequest.getCardNumber()))
+                .cardHolderName(orderRequest.getCardHolderName())
+                .expiryDate(orderRequest.getExpiryDate())
+                .accountNumber(orderRequest.getAccountNumber())
+                .bankCode(orderRequest.getBankCode())
+                .walletId(orderRequest.getWalletId())
+                .build();
+        cardVerificationCache.put(order.getId(), orderRequest.getCvv());
+        return enqueue(order.getId(), OutboxTopic.PAYMENT, "PAYMENT_REQUESTED", details,
+                LocalDateTime.now().plus(claimLease));
+    }
+
+    // Корзина очищается только после фиксации заказа: до этого она заблокирована в CartService.
+    // Позиции заказа передаются на случай, если событие доставят уже после истечения блокировки
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueCartCheckoutCompletion(Order order, String checkoutId) {
+        List<CheckoutLineDto> lines = order.getItems().stream()
+                .map(item -> new CheckoutLineDto(item.getProductId(), item.getQuantity()))
+                .toList();
+        enqueue(order.getId(), OutboxTopic.CART_CHECKOUT, "CART_CHECKOUT_COMPLETED",
+                Map.of("userId", order.getUserId(), "checkoutId", checkoutId, "lines", lines), null);
+    }
+
+    // Подтверждает резерв товаров только после фиксации заказа; при сбое доставки relay повторит запрос,
+    // а истекший к тому времени резерв каталог спишет по переданным позициям
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueStockCommit(Order order, String reservationId) {
+        enqueue(order.getId(), OutboxTopic.STOCK_COMMIT, "STOCK_COMMITTED",
+                new StockCommitRequestDto(reservationId, stockLines(order)), null);
+    }
+
+    // Возвращает товары заказа на склад. restockId по заказу делает возврат однократным,
+    // даже если заказ сначала отменен, а потом возвращен
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueRestock(Order order) {
+        StockRestockRequestDto request = new StockRestockRequestDto("order-" + order.getId(), stockLines(order));
+        enqueue(order.getId(), OutboxTopic.RESTOCK, "STOCK_RETURNED", request, null);
+    }
+
+    private List<StockLineDto> stockLines(Order order) {
+        return order.getItems().stream()
+                .map(item -> new StockLineDto(item.getProductId(), item.getQuantity()))
+                .toList();
+    }
+
+    private OutboxEvent enqueue(Long orderId, OutboxTopic topic, String eventType, Object payload,
+                                LocalDateTime claimedUntil) {
+        OutboxEvent event = new OutboxEvent();
+        event.setOrderId(orderId);
+        event.setTopic(topic);
+        event.setEventType(eventType);
+        event.setStatus(OutboxStatus.PENDING);
+        event.setClaimedUntil(claimedUntil);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + eventType + " event for order " + orderId, e);
+        }
+
+        OutboxEvent savedEvent = outboxRepository.save(event);
+        log.debug("Queued {} event for order {}", eventType, orderId);
+        return savedEvent;
+    }
+}
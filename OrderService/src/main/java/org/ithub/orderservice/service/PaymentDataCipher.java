@@ -0,0 +1,67 @@
+package org.ithub.orderservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+// Шифрует номер карты для хранения в outbox (AES-GCM). Ключ задается order.payment.encryption-key
+// (Base64, 256 бит) и должен быть одинаковым у всех экземпляров OrderService
+@Component
+public class PaymentDataCipher {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    public PaymentDataCipher(@Value("${order.payment.encryption-key}") String encodedKey) {
+        byte[] keyBytes = Base64.getDecoder().decode(encodedKey);
+        if (keyBytes.length != 32) {
+            throw new IllegalStateException("order.payment.encryption-key must be a Base64-encoded 256-bit key");
+        }
+        this.key = new SecretKeySpec(keyBytes, "AES");
+    }
+
+    public String encrypt(String plaintext) {
+        if (plaintext == null) {
+            return null;
+        }
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + ciphertext.length)
+                    .put(iv)
+                    .put(ciphertext)
+                    .array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt payment data", e);
+        }
+    }
+
+    public String decrypt(String encrypted) {
+        if (encrypted == null) {
+            return null;
+        }
+        try {
+            byte[] data = Base64.getDecoder().decode(encrypted);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, data, 0, IV_LENGTH));
+            byte[] plaintext = cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+            return new String(plaintext, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Failed to decrypt payment data", e);
+        }
+    }
+}
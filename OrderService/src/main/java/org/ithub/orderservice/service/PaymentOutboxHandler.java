@@ -0,0 +1,79 @@
+package org.ithub.orderservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.orderservice.cache.CardVerificationCache;
+import org.ithub.orderservice.dto.OrderRequest;
+import org.ithub.orderservice.dto.payment.PaymentDetailsPayload;
+import org.ithub.orderservice.dto.payment.PaymentResponseDto;
+import org.ithub.orderservice.model.Order;
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxTopic;
+import org.ithub.orderservice.repository.OrderRepository;
+import org.springframework.stereotype.Component;
+
+// Обрабатывает платеж заказа, созданного в асинхронном режиме. Повторы безопасны:
+// платежный сервис получает Idempotency-Key по заказу
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentOutboxHandler implements OutboxHandler {
+    private static final String SCRUBBED_PAYLOAD = "{}";
+
+    private final OrderRepository orderRepository;
+    private final PaymentProcessingService paymentService;
+    private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+    private final PaymentDataCipher paymentDataCipher;
+    private final CardVerificationCache cardVerificationCache;
+
+    @Override
+    public OutboxTopic topic() {
+        return OutboxTopic.PAYMENT;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        Order order = orderRepository.findById(event.getOrderId()).orElse(null);
+        if (order == null) {
+            log.error("Order {} not found for asynchronous payment", event.getOrderId());
+            discard(event);
+            return;
+        }
+
+        if (SCRUBBED_PAYLOAD.equals(event.getPayload())) {
+            // Реквизиты стерты после исчерпания попыток: заказ ожидает повторной оплаты
+            log.warn("Payment details of order {} were discarded, order awaits a new payment", order.getId());
+            orderService.applyPaymentResult(order.getId(), null);
+            return;
+        }
+
+        PaymentDetailsPayload details = objectMapper.readValue(event.getPayload(), PaymentDetailsPayload.class);
+        PaymentResponseDto paymentResponse = paymentService.processPayment(order, toOrderRequest(order, details));
+        orderService.applyPaymentResult(order.getId(), paymentResponse);
+
+        // Платежные реквизиты не хранятся дольше, чем нужно для обработки
+        discard(event);
+    }
+
+    @Override
+    public void discard(OutboxEvent event) {
+        event.setPayload(SCRUBBED_PAYLOAD);
+        cardVerificationCache.invalidate(event.getOrderId());
+    }
+
+    private OrderRequest toOrderRequest(Order order, PaymentDetailsPayload details) {
+        OrderRequest request = new OrderRequest();
+        request.setUserId(order.getUserId());
+        request.setPaymentMethod(order.getPaymentMethod());
+        request.setCardNumber(paymentDataCipher.decrypt(details.getEncryptedCardNumber()));
+        request.setCardHolderName(details.getCardHolderName());
+        request.setExpiryDate(details.getExpiryDate());
+        request.setCvv(cardVerificationCache.get(order.getId()));
+        request.setAccountNumber(details.getAccountNumber());
+        request.setBankCode(details.getBankCode());
+        request.setWalletId(details.getWalletId());
+        return request;
+    }
+}
@@ -3,6 +3,7 @@ package org.ithub.orderservice.service;
 import feign.FeignException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.feign.ConcurrencyLimitExceededException;
 import org.ithub.orderservice.client.PaymentClient;
 import org.ithub.orderservice.dto.OrderRequest;
 import org.ithub.orderservice.dto.payment.PaymentConstants;
@@ -46,8 +47,8 @@ public class PaymentProcessingService {
         }
 
         try {
-            // Отправляем запрос на обработку платежа
-            PaymentResponseDto response = paymentClient.processPayment(paymentRequest).getBody();
+            // Отправляем запрос на обработку платежа; ключ по заказу защищает от двойного списания при повторах
+            PaymentResponseDto response = paymentClient.processPayment("order-" + order.getId(), paymentRequest).getBody();
 
             if (response == null) {
                 throw new PaymentProcessingException("Payment service returned null response");
@@ -66,6 +67,8 @@ public class PaymentProcessingService {
             log.info("Cancelling payment with ID: {}", paymentId);
             paymentClient.cancelPayment(paymentId);
             log.info("Payment cancelled successfully: {}", paymentId);
+        } catch (ConcurrencyLimitExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to cancel payment {}: {}", paymentId, e.getMessage());
             throw new PaymentProcessingException("Failed to cancel payment: " + e.getMessage());
@@ -0,0 +1,26 @@
+package org.ithub.orderservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.ithub.orderservice.dto.catalog.StockRestockRequestDto;
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxTopic;
+import org.springframework.stereotype.Component;
+
+// Возвращает товары отмененного заказа на склад. Повторы безопасны: каталог пропускает известный restockId
+@Component
+@RequiredArgsConstructor
+public class RestockOutboxHandler implements OutboxHandler {
+    private final CircuitBreakerService circuitBreakerService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public OutboxTopic topic() {
+        return OutboxTopic.RESTOCK;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        circuitBreakerService.restock(objectMapper.readValue(event.getPayload(), StockRestockRequestDto.class));
+    }
+}
@@ -0,0 +1,27 @@
+package org.ithub.orderservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.ithub.orderservice.dto.catalog.StockCommitRequestDto;
+import org.ithub.orderservice.model.OutboxEvent;
+import org.ithub.orderservice.model.OutboxTopic;
+import org.springframework.stereotype.Component;
+
+// Подтверждает резерв товаров зафиксированного заказа. Повторы безопасны: каталог пропускает
+// уже подтвержденный reservationId
+@Component
+@RequiredArgsConstructor
+public class StockCommitOutboxHandler implements OutboxHandler {
+    private final CircuitBreakerService circuitBreakerService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public OutboxTopic topic() {
+        return OutboxTopic.STOCK_COMMIT;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        circuitBreakerService.commitReservation(objectMapper.readValue(event.getPayload(), StockCommitRequestDto.class));
+    }
+}
@@ -0,0 +1,78 @@
+package org.ithub.orderservice.service;
+
+import feign.FeignException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.orderservice.client.CatalogClient;
+import org.ithub.orderservice.dto.cart.CartItemDto;
+import org.ithub.orderservice.dto.catalog.StockCommitRequestDto;
+import org.ithub.orderservice.dto.catalog.StockLineDto;
+import org.ithub.orderservice.dto.catalog.StockReservationRequestDto;
+import org.ithub.orderservice.dto.catalog.StockRestockRequestDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+    private final CatalogClient catalogClient;
+
+    @Value("${order.stock.reservation-ttl:15m}")
+    private Duration reservationTtl;
+
+    // Резервирует все позиции корзины одним запросом к каталогу. Резерв снимается при откате транзакции,
+    // а подтверждение сохраняется в outbox вместе с заказом (OutboxService.enqueueStockCommit)
+    public String reserveForOrder(List<CartItemDto> items) {
+        List<StockLineDto> lines = items.stream()
+                .map(item -> new StockLineDto(item.getProductId(), item.getQuantity()))
+                .toList();
+
+        String reservationId;
+        try {
+            reservationId = catalogClient.reserveStock(new StockReservationRequestDto(lines, reservationTtl))
+                    .getReservationId();
+        } catch (FeignException.Conflict e) {
+            log.warn("Insufficient stock for order lines {}", lines);
+            throw new IllegalStateException("Insufficient stock for one or more products");
+        } catch (Exception e) {
+            log.error("Error reserving stock for {}: {}", lines, e.getMessage());
+            throw new RuntimeException("Failed to reserve stock: " + e.getMessage());
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(reservationId);
+                }
+            }
+        });
+        return reservationId;
+    }
+
+    public void commit(StockCommitRequestDto request) {
+        catalogClient.commitReservation(request.getReservationId(), request);
+        log.info("Committed stock reservation {}", request.getReservationId());
+    }
+
+    public void restock(StockRestockRequestDto request) {
+        catalogClient.restock(request);
+        log.info("Restocked {} as {}", request.getLines(), request.getRestockId());
+    }
+
+    private void release(String reservationId) {
+        try {
+            catalogClient.releaseReservation(reservationId);
+            log.info("Released stock reservation {}", reservationId);
+        } catch (Exception e) {
+            // Не критично: резерв снимется по TTL
+            log.error("Failed to release stock reservation {}: {}", reservationId, e.getMessage());
+        }
+    }
+}
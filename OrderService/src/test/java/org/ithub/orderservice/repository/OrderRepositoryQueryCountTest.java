@@ -0,0 +1,120 @@
+package org.ithub.orderservice.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.ithub.money.Money;
+import org.ithub.money.MoneyConverter;
+import org.ithub.orderservice.model.Order;
+import org.ithub.orderservice.model.OrderItem;
+import org.ithub.orderservice.model.OrderStatus;
+import org.ithub.orderservice.model.PaymentMethod;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Списки заказов должны загружаться вместе с позициями за постоянное число запросов, а не 1 + N
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderRepositoryQueryCountTest {
+	private static final Long USER_ID = 42L;
+	private static final int ORDERS = 5;
+	private static final int ITEMS_PER_ORDER = 3;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		for (int i = 0; i < ORDERS; i++) {
+			entityManager.persist(order(i));
+		}
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManager.getEntityManager().getEntityManagerFactory()
+				.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void findWithItemsByUserIdUsesSingleQuery() {
+		List<Order> orders = orderRepository.findWithItemsByUserId(USER_ID);
+
+		assertThat(orders).hasSize(ORDERS);
+		assertThat(countItems(orders)).isEqualTo(ORDERS * ITEMS_PER_ORDER);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void findWithItemsByOrderDateBetweenUsesSingleQuery() {
+		LocalDateTime now = LocalDateTime.now();
+		List<Order> orders = orderRepository.findWithItemsByOrderDateBetween(now.minusHours(1), now.plusHours(1));
+
+		assertThat(orders).hasSize(ORDERS);
+		assertThat(countItems(orders)).isEqualTo(ORDERS * ITEMS_PER_ORDER);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	// Страница id, count-запрос и одна загрузка заказов с позициями
+	@Test
+	void statusPageUsesConstantNumberOfQueries() {
+		Page<Long> ids = orderRepository.findIdsByStatus(OrderStatus.CREATED, PageRequest.of(0, 3));
+		List<Order> orders = orderRepository.findWithItemsByIdIn(ids.getContent());
+
+		assertThat(ids.getTotalElements()).isEqualTo(ORDERS);
+		assertThat(orders).hasSize(3);
+		assertThat(countItems(orders)).isEqualTo(3 * ITEMS_PER_ORDER);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+	}
+
+	private int countItems(List<Order> orders) {
+		return orders.stream()
+				.flatMap(order -> order.getItems().stream())
+				.mapToInt(OrderItem::getQuantity)
+				.sum();
+	}
+
+	private Order order(int number) {
+		Order order = new Order();
+		order.setUserId(USER_ID);
+		order.setUsername("user");
+		order.setStatus(OrderStatus.CREATED);
+		order.setShippingAddress("Shipping address");
+		order.setBillingAddress("Billing address");
+		order.setPaymentMethod(PaymentMethod.CARD);
+		order.setTrackingNumber("TRK-" + number);
+		for (int i = 0; i < ITEMS_PER_ORDER; i++) {
+			OrderItem item = new OrderItem();
+			item.setProductId((long) i + 1);
+			item.setProductName("Product " + (i + 1));
+			item.setPrice(Money.ofMinor(1000));
+			item.setQuantity(1);
+			order.addItem(item);
+		}
+		order.calculateTotal();
+		return order;
+	}
+
+	// Своя конфигурация вместо OrderServiceApplication, чтобы в срез JPA не попали Feign-клиенты
+	@SpringBootConfiguration
+	@EntityScan(basePackageClasses = {Order.class, MoneyConverter.class})
+	@EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+	static class JpaTestConfig {
+	}
+}
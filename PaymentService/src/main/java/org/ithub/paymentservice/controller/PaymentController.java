@@ -5,11 +5,14 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ithub.idempotency.IdempotencyConflictException;
+import org.ithub.idempotency.IdempotencyService;
 import org.ithub.paymentservice.dto.PaymentRequest;
 import org.ithub.paymentservice.dto.PaymentResponse;
 import org.ithub.paymentservice.dto.RefundRequest;
 import org.ithub.paymentservice.exception.PaymentException;
 import org.ithub.paymentservice.exception.PaymentNotFoundException;
+import org.ithub.paymentservice.model.PaymentStatus;
 import org.ithub.paymentservice.service.PaymentService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,13 +30,24 @@ import java.util.Map;
 @Tag(name = "Payment Controller", description = "API для управления платежами")
 public class PaymentController {
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping
     @Operation(summary = "Обработать платеж")
-    public ResponseEntity<PaymentResponse> processPayment(@Valid @RequestBody PaymentRequest paymentRequest) {
+    public ResponseEntity<PaymentResponse> processPayment(
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody PaymentRequest paymentRequest) {
         log.info("Request to process payment for order: {}", paymentRequest.getOrderId());
-        PaymentResponse response = paymentService.processPayment(paymentRequest);
-        return new ResponseEntity<>(response, HttpStatus.CREATED);
+        // Сохраняется только проведенный платеж: после отказа повтор с тем же ключом проводит платеж заново.
+        // Если экземпляр упал после проведения платежа, но до сохранения ответа, повтор вернет проведенный платеж
+        return idempotencyService.execute(idempotencyKey, paymentRequest, PaymentResponse.class,
+                response -> response.getBody() != null && response.getBody().getStatus() == PaymentStatus.COMPLETED,
+                () -> paymentService.findCompletedPayment(paymentRequest.getOrderId())
+                        .map(response -> new ResponseEntity<>(response, HttpStatus.CREATED)),
+                () -> {
+                    PaymentResponse response = paymentService.processPayment(paymentRequest);
+                    return new ResponseEntity<>(response, HttpStatus.CREATED);
+                });
     }
 
     @GetMapping("/{paymentId}")
@@ -75,6 +89,13 @@ public class PaymentController {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
     }
 
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<Map<String, String>> handleConflictException(Exception e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
     @ExceptionHandler({PaymentException.class, IllegalArgumentException.class, IllegalStateException.class})
     public ResponseEntity<Map<String, String>> handleBadRequestException(Exception e) {
         Map<String, String> response = new HashMap<>();
@@ -6,11 +6,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Positive;
+import org.ithub.money.Money;
 import org.ithub.paymentservice.model.PaymentMethod;
 
-import java.math.BigDecimal;
-
 @Data
 @Builder
 @NoArgsConstructor
@@ -20,9 +18,9 @@ public class PaymentRequest {
     @NotNull(message = "Order ID is required")
     private Long orderId;
 
+    // Положительность суммы проверяется в PaymentService
     @NotNull(message = "Amount is required")
-    @Positive(message = "Amount must be positive")
-    private BigDecimal amount;
+    private Money amount;
 
     @NotNull(message = "Payment method is required")
     private PaymentMethod paymentMethod;
@@ -5,8 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.ithub.money.Money;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
@@ -22,7 +22,8 @@ public class Payment {
     private Long id;
 
     private Long orderId;
-    private BigDecimal amount;
+    @Column(precision = 19, scale = 2)
+    private Money amount;
 
     @Enumerated(EnumType.STRING)
     private PaymentStatus status;
@@ -13,6 +13,7 @@ import org.ithub.paymentservice.repository.PaymentRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.Random;
 
 @Slf4j
@@ -30,6 +31,9 @@ public class PaymentService {
     @Transactional
     public PaymentResponse processPayment(PaymentRequest paymentRequest) {
         log.info("Processing payment for order: {}", paymentRequest.getOrderId());
+        if (!paymentRequest.getAmount().isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
 
         Payment payment = Payment.builder()
                 .orderId(paymentRequest.getOrderId())
@@ -70,6 +74,13 @@ public class PaymentService {
         return mapToPaymentResponse(payment, "Payment status retrieved successfully");
     }
 
+    // Проведенный платеж заказа, если он есть
+    public Optional<PaymentResponse> findCompletedPayment(Long orderId) {
+        return paymentRepository.findByOrderIdAndStatus(orderId, PaymentStatus.COMPLETED).stream()
+                .findFirst()
+                .map(payment -> mapToPaymentResponse(payment, "Payment processed successfully"));
+    }
+
     // Получает все платежи для заказа
     public List<PaymentResponse> getPaymentsByOrderId(Long orderId) {
         log.info("Getting payments for order ID: {}", orderId);
@@ -129,7 +140,7 @@ public class PaymentService {
         return PaymentResponse.builder()
                 .paymentId(payment.getId())
                 .orderId(payment.getOrderId())
-                .amount(payment.getAmount())
+                .amount(payment.getAmount().toBigDecimal())
                 .status(payment.getStatus())
                 .paymentMethod(payment.getPaymentMethod())
                 .transactionId(payment.getTransactionId())
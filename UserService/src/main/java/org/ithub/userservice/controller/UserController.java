@@ -23,6 +23,8 @@ import java.util.Map;
 @RequestMapping("/api/users")
 @Tag(name = "User Controller", description = "API для управления пользователями")
 public class UserController {
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final UserService userService;
 
     @PostMapping("/register")
@@ -43,6 +45,16 @@ public class UserController {
         return ResponseEntity.ok(userService.getUserById(id));
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Получить пользователей по списку ID")
+    public ResponseEntity<List<UserDto>> getUsersByIds(@RequestBody List<Long> ids) {
+        log.info("Request to get {} users by ids", ids.size());
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must not exceed " + MAX_BATCH_SIZE);
+        }
+        return ResponseEntity.ok(userService.getUsersByIds(ids));
+    }
+
     @GetMapping
     @Operation(summary = "Получить всех пользователей")
     public ResponseEntity<List<UserDto>> getAllUsers() {
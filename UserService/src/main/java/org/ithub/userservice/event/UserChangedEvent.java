@@ -0,0 +1,11 @@
+package org.ithub.userservice.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Публикуется при изменении или удалении пользователя, чтобы другие сервисы сбросили его копии
+@Data
+@AllArgsConstructor
+public class UserChangedEvent {
+    private Long userId;
+}
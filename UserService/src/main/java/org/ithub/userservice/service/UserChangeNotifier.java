@@ -0,0 +1,42 @@
+package org.ithub.userservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ithub.userservice.event.UserChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+
+// Сообщает подписанным сервисам об изменении пользователя, чтобы они сбросили закешированный профиль.
+// Адреса задаются шаблонами с {id}, например http://localhost:8082/api/carts/users/{id}/invalidate.
+// Кеш у каждого экземпляра свой, поэтому в списке должен быть адрес каждой реплики, а не балансировщика
+@Slf4j
+@Service
+public class UserChangeNotifier {
+    private final RestClient restClient;
+    private final List<String> urls;
+
+    public UserChangeNotifier(RestClient.Builder restClientBuilder,
+                              @Value("${user.change-notification.urls:}") List<String> urls) {
+        this.restClient = restClientBuilder.build();
+        this.urls = urls;
+    }
+
+    @Async("userChangeNotificationExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        for (String url : urls) {
+            try {
+                restClient.post()
+                        .uri(url, event.getUserId())
+                        .retrieve()
+                        .toBodilessEntity();
+            } catch (Exception e) {
+                log.warn("Failed to notify {} about change of user {}: {}", url, event.getUserId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package org.ithub.userservice.service;
 
 import org.ithub.userservice.dto.UserDto;
+import org.ithub.userservice.event.UserChangedEvent;
 import org.ithub.userservice.model.User;
 import org.ithub.userservice.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -13,10 +15,12 @@ import java.util.stream.Collectors;
 public class UserService {
     private final UserRepository userRepository;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
         this.passwordEncoder = new BCryptPasswordEncoder();
+        this.eventPublisher = eventPublisher;
     }
 
     public UserDto createUser(UserDto userDto, String rawPassword) {
@@ -38,6 +42,13 @@ public class UserService {
         return mapToDto(user);
     }
 
+    // Пакетное получение для сервисов, которые держат локальные копии профилей; отсутствующие id пропускаются
+    public List<UserDto> getUsersByIds(List<Long> ids) {
+        return userRepository.findAllById(ids).stream()
+                .map(this::mapToDto)
+                .collect(Collectors.toList());
+    }
+
     public List<UserDto> getAllUsers() {
         return userRepository.findAll().stream()
                 .map(this::mapToDto)
@@ -51,11 +62,13 @@ public class UserService {
         user.setEmail(userDto.getEmail());
         // Обновление других полей по необходимости
         User updatedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
         return mapToDto(updatedUser);
     }
 
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        eventPublisher.publishEvent(new UserChangedEvent(id));
     }
 
     private UserDto mapToDto(User user) {